@@ -0,0 +1,129 @@
+package com.ninja.tags;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.Message;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic data folders for the benchmarks: a tags.json, a config.json and a seeded player-tags.json.
+ */
+final class BenchmarkData {
+    static final HytaleLogger LOGGER = HytaleLogger.get("ninjatags-jmh");
+
+    static final int MENU_ROWS = 12;
+
+    private static final Gson GSON = new Gson();
+    private static final String[] COLORS = {"#808080", "#F2C94C", "#9B51E0", "#56CCF2", "#EB5757"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Creates a temporary data folder. Every fourth tag uses inline colour codes, like hand-written gradients.
+     */
+    static Path createDataFolder(String storage, boolean writeBehind, boolean lazyLoading, int tagCount) throws IOException {
+        Path dataFolder = Files.createTempDirectory("ninjatags-jmh");
+
+        JsonObject config = new JsonObject();
+        config.addProperty("storage", storage);
+        config.addProperty("writeBehind", writeBehind);
+        config.addProperty("lazyLoading", lazyLoading);
+        config.addProperty("reconcileOnStartup", false);
+        try (Writer out = Files.newBufferedWriter(dataFolder.resolve("config.json"))) {
+            GSON.toJson(config, out);
+        }
+
+        try (Writer out = Files.newBufferedWriter(dataFolder.resolve("tags.json"))) {
+            GSON.toJson(tags(tagCount), out);
+        }
+        return dataFolder;
+    }
+
+    static List<TagDefinition> tags(int count) {
+        List<TagDefinition> tags = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String color = COLORS[i % COLORS.length];
+            String text = i % 4 == 3 ? "&#FF5555Tag &#FFAA00Number &#FFFF55" + i : "Tag " + i;
+            tags.add(new TagDefinition(tagId(i), "Tag " + i, color, text));
+        }
+        return tags;
+    }
+
+    static String tagId(int index) {
+        return "tag" + index;
+    }
+
+    static UUID playerId(int index) {
+        return new UUID(0x4E5441474A4D4800L, index);
+    }
+
+    /**
+     * Writes player-tags.json with one to five tags per player, the first of them equipped. Sqlite and binary
+     * storage import it on their first load, the same way a real server migrates.
+     */
+    static void writePlayers(Path dataFolder, int players, int tagCount) throws IOException {
+        SplittableRandom random = new SplittableRandom(players);
+        Map<UUID, PlayerTagRecord> records = new HashMap<>(players * 2);
+        for (int i = 0; i < players; i++) {
+            PlayerTagRecord record = new PlayerTagRecord();
+            int owned = 1 + random.nextInt(5);
+            for (int j = 0; j < owned; j++) {
+                String tagId = tagId(random.nextInt(tagCount));
+                if (!record.tags.contains(tagId)) {
+                    record.tags.add(tagId);
+                }
+            }
+            record.equippedTag = record.tags.getFirst();
+            records.put(playerId(i), record);
+        }
+        new JsonPlayerTagStore(dataFolder.resolve("player-tags.json"), GSON, LOGGER).writeSnapshot(records);
+    }
+
+    static TagRepository openRepository(Path dataFolder) {
+        TagRepository repository = new TagRepository(dataFolder, NinjaTagsConfig.load(dataFolder, LOGGER), new TagMetrics(), LOGGER);
+        repository.load();
+        return repository;
+    }
+
+    /**
+     * The repository side of building one page of the tags menu, as {@code TagsMenuPage} does: the owned and
+     * visible sets, the page count, and the rendered label of every row on the page.
+     */
+    static Message[] renderMenuPage(TagRepository repository, UUID playerId, String filter, int page) {
+        TagSet owned = repository.getOwnedTagSet(playerId);
+        TagSet visible = filter.isEmpty() ? repository.getDefinedTags() : repository.matchTags(filter);
+        int pageCount = Math.max(1, (owned.intersectionSize(visible) + MENU_ROWS - 1) / MENU_ROWS);
+        int ordinal = owned.nthOrdinal(Math.min(page, pageCount - 1) * MENU_ROWS, visible);
+        Message[] rows = new Message[MENU_ROWS];
+        for (int row = 0; row < MENU_ROWS && ordinal >= 0; row++) {
+            rows[row] = repository.getTagText(ordinal).toMessage();
+            ordinal = owned.nextOrdinal(ordinal + 1, visible);
+        }
+        return rows;
+    }
+
+    static void delete(Path dataFolder) throws IOException {
+        if (dataFolder == null || !Files.exists(dataFolder)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dataFolder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ninja.tags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost of {@link TagRepository#load()}: opening the store and, unless lazy loading applies, reading every
+ * player. Each invocation also closes the repository again, which is cheap next to the load.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PlayerStoreLoadBenchmark {
+    private static final int TAG_COUNT = 64;
+
+    @Param({"10000", "100000", "1000000"})
+    public int players;
+
+    @Param({"json", "sqlite", "binary"})
+    public String storage;
+
+    @Param({"false"})
+    public boolean lazyLoading;
+
+    private Path dataFolder;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = BenchmarkData.createDataFolder(storage, false, lazyLoading, TAG_COUNT);
+        BenchmarkData.writePlayers(dataFolder, players, TAG_COUNT);
+        // The first load migrates player-tags.json into sqlite or binary storage; only later loads are measured.
+        BenchmarkData.openRepository(dataFolder).shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dataFolder);
+    }
+
+    @Benchmark
+    public int load() {
+        TagRepository repository = BenchmarkData.openRepository(dataFolder);
+        int cached = repository.getCacheStats().cachedPlayers();
+        repository.shutdown();
+        return cached;
+    }
+}
@@ -0,0 +1,77 @@
+package com.ninja.tags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link TagRepository#save()} after {@code changedPlayers} players changed, with write-behind off so
+ * the call persists synchronously.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PlayerStoreSaveBenchmark {
+    private static final int TAG_COUNT = 64;
+
+    @Param({"10000", "100000", "1000000"})
+    public int players;
+
+    @Param({"json", "sqlite", "binary"})
+    public String storage;
+
+    @Param({"1", "1000"})
+    public int changedPlayers;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private Path dataFolder;
+    private TagRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = BenchmarkData.createDataFolder(storage, false, false, TAG_COUNT);
+        BenchmarkData.writePlayers(dataFolder, players, TAG_COUNT);
+        repository = BenchmarkData.openRepository(dataFolder);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.shutdown();
+        BenchmarkData.delete(dataFolder);
+    }
+
+    @Setup(Level.Invocation)
+    public void changePlayers() {
+        for (int i = 0; i < changedPlayers; i++) {
+            UUID playerId = BenchmarkData.playerId(random.nextInt(players));
+            String tagId = BenchmarkData.tagId(random.nextInt(TAG_COUNT));
+            if (!repository.grantTag(playerId, tagId)) {
+                repository.revokeTag(playerId, tagId);
+            }
+        }
+    }
+
+    @Benchmark
+    public void save() {
+        repository.save();
+    }
+}
@@ -0,0 +1,110 @@
+package com.ninja.tags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository reads and writes from several threads at once, the way the world thread, command threads and
+ * background runners share it on a live server. Writes go through write-behind so the flusher competes for the
+ * repository like it does in production.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryContentionBenchmark {
+    private static final int TAG_COUNT = 64;
+
+    @Param({"10000"})
+    public int players;
+
+    @Param({"json", "sqlite", "binary"})
+    public String storage;
+
+    @Param({"false"})
+    public boolean lazyLoading;
+
+    private Path dataFolder;
+    private TagRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = BenchmarkData.createDataFolder(storage, true, lazyLoading, TAG_COUNT);
+        BenchmarkData.writePlayers(dataFolder, players, TAG_COUNT);
+        repository = BenchmarkData.openRepository(dataFolder);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.shutdown();
+        BenchmarkData.delete(dataFolder);
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+
+        UUID nextPlayer(int players) {
+            return BenchmarkData.playerId(random.nextInt(players));
+        }
+
+        String nextTag() {
+            return BenchmarkData.tagId(random.nextInt(TAG_COUNT));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void read(Caller caller, Blackhole blackhole) {
+        UUID playerId = caller.nextPlayer(players);
+        blackhole.consume(repository.getOwnedTagSet(playerId));
+        blackhole.consume(repository.getEquippedOrdinal(playerId));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean write(Caller caller) {
+        return toggle(caller.nextPlayer(players), caller.nextTag());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public void mixedRead(Caller caller, Blackhole blackhole) {
+        read(caller, blackhole);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean mixedWrite(Caller caller) {
+        return write(caller);
+    }
+
+    private boolean toggle(UUID playerId, String tagId) {
+        return repository.grantTag(playerId, tagId) || repository.revokeTag(playerId, tagId);
+    }
+}
@@ -0,0 +1,182 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.server.core.command.system.CommandSender;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Headless load generator. Simulated players open the tags menu, equip and de-equip against a real
+ * {@link TagRepository}, going through {@link TagCommandQueue} and an {@link InMemorySuffixBackend} with injected
+ * latency. Menu builds and equip callbacks run on single-threaded "world" executors, as on a server.
+ * Prints throughput and latency percentiles per operation.
+ *
+ * <p>Options are {@code key=value} arguments: {@code players}, {@code seconds}, {@code storage},
+ * {@code tags}, {@code latencyMillis}, {@code jitterMillis}, {@code thinkMillis}, {@code worlds},
+ * {@code writeBehind}.
+ */
+public final class TagLoadDriver {
+    private static final CommandSender NO_FEEDBACK = message -> {
+    };
+
+    private final Map<String, String> options;
+    private final int players;
+    private final int tagCount;
+    private final long thinkMillis;
+
+    private TagLoadDriver(Map<String, String> options) {
+        this.options = options;
+        this.players = intOption("players", 200);
+        this.tagCount = intOption("tags", 64);
+        this.thinkMillis = intOption("thinkMillis", 50);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got: " + arg);
+            }
+            options.put(arg.substring(0, split), arg.substring(split + 1));
+        }
+        new TagLoadDriver(options).run();
+    }
+
+    private void run() throws Exception {
+        String storage = options.getOrDefault("storage", "json");
+        boolean writeBehind = Boolean.parseBoolean(options.getOrDefault("writeBehind", "true"));
+        int seconds = intOption("seconds", 30);
+        int worldCount = intOption("worlds", 1);
+        long latencyMillis = intOption("latencyMillis", 20);
+        long jitterMillis = intOption("jitterMillis", 10);
+
+        Path dataFolder = BenchmarkData.createDataFolder(storage, writeBehind, false, tagCount);
+        BenchmarkData.writePlayers(dataFolder, players, tagCount);
+        TagMetrics metrics = new TagMetrics();
+        TagRepository repository = new TagRepository(dataFolder, NinjaTagsConfig.load(dataFolder, BenchmarkData.LOGGER), metrics, BenchmarkData.LOGGER);
+        repository.load();
+        InMemorySuffixBackend backend = new InMemorySuffixBackend(latencyMillis, jitterMillis);
+        LuckPermsTagService suffixService = new LuckPermsTagService(backend, metrics, 5000);
+        TagEquipper equipper = new TagEquipper(repository, suffixService, metrics, BenchmarkData.LOGGER);
+        TagCommandQueue commands = new TagCommandQueue(repository, equipper, BenchmarkData.LOGGER);
+
+        // Start from the suffixes the repository already records, as after a startup reconcile.
+        for (int i = 0; i < players; i++) {
+            UUID playerId = BenchmarkData.playerId(i);
+            TagDefinition equipped = repository.getTag(repository.getEquippedTag(playerId));
+            backend.writeSuffix(playerId, equipped == null ? null : equipped.formattedSuffix()).join();
+        }
+
+        List<ExecutorService> worlds = new ArrayList<>(worldCount);
+        for (int i = 0; i < worldCount; i++) {
+            String name = "world-" + i;
+            worlds.add(Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, name)));
+        }
+
+        System.out.printf(Locale.ROOT, "Simulating %d players for %ds: storage=%s writeBehind=%s worlds=%d suffix latency=%d+%dms think=%dms%n",
+                players, seconds, storage, writeBehind, worldCount, latencyMillis, jitterMillis, thinkMillis);
+        AtomicInteger actions = new AtomicInteger();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long started = System.nanoTime();
+        try (ExecutorService simulated = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < players; i++) {
+                UUID playerId = BenchmarkData.playerId(i);
+                ExecutorService world = worlds.get(i % worldCount);
+                simulated.submit(() -> {
+                    simulatePlayer(playerId, world, repository, commands, metrics, deadline, actions);
+                    return null;
+                });
+            }
+        }
+        double elapsedSeconds = (System.nanoTime() - started) / 1_000_000_000.0;
+
+        for (ExecutorService world : worlds) {
+            world.shutdown();
+            world.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        commands.shutdown();
+        repository.shutdown();
+        suffixService.shutdown();
+
+        int mismatched = 0;
+        for (int i = 0; i < players; i++) {
+            UUID playerId = BenchmarkData.playerId(i);
+            TagDefinition equipped = repository.getTag(repository.getEquippedTag(playerId));
+            String expected = equipped == null ? null : equipped.formattedSuffix();
+            if (expected == null ? backend.suffix(playerId) != null : !expected.equals(backend.suffix(playerId))) {
+                mismatched++;
+            }
+        }
+
+        report(metrics, actions.get(), elapsedSeconds, mismatched);
+        CommandQueueStats queue = commands.getStats();
+        System.out.printf(Locale.ROOT, "tag changes submitted=%d coalesced=%d%n", queue.submitted(), queue.coalesced());
+        BenchmarkData.delete(dataFolder);
+    }
+
+    private void simulatePlayer(UUID playerId, ExecutorService world, TagRepository repository, TagCommandQueue commands,
+                                TagMetrics metrics, long deadline, AtomicInteger actions) throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(random.nextLong(thinkMillis * 2 + 1));
+
+            int roll = random.nextInt(100);
+            if (roll < 60) {
+                int page = random.nextInt(3);
+                CompletableFuture.runAsync(() -> {
+                    TagOperationEvent timing = metrics.start(TagMetrics.Operation.PAGE_BUILD);
+                    BenchmarkData.renderMenuPage(repository, playerId, "", page);
+                    metrics.stop(timing, playerId, null, true);
+                }, world).join();
+            } else if (roll < 85 || repository.getEquippedTag(playerId) == null) {
+                String tagId = randomOwnedTag(repository, playerId, random);
+                if (tagId == null) {
+                    continue;
+                }
+                commands.equip(playerId, tagId, NO_FEEDBACK, world).join();
+            } else {
+                commands.deEquip(playerId, NO_FEEDBACK, world).join();
+            }
+            actions.incrementAndGet();
+        }
+    }
+
+    private static String randomOwnedTag(TagRepository repository, UUID playerId, ThreadLocalRandom random) {
+        List<String> owned = repository.getOwnedTags(playerId);
+        return owned.isEmpty() ? null : owned.get(random.nextInt(owned.size()));
+    }
+
+    private static void report(TagMetrics metrics, int actions, double elapsedSeconds, int mismatched) {
+        System.out.printf(Locale.ROOT, "%d player actions in %.1fs (%.1f/s); suffix/repository mismatches after shutdown: %d%n",
+                actions, elapsedSeconds, actions / elapsedSeconds, mismatched);
+        System.out.printf(Locale.ROOT, "%-16s %9s %9s %7s %9s %9s %9s %9s%n", "operation", "count", "rate/s", "failed", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (TagMetrics.Operation operation : TagMetrics.Operation.values()) {
+            LatencyHistogram.Snapshot latency = metrics.snapshot(operation);
+            if (latency.count() == 0) {
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "%-16s %9d %9.1f %7d %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.label(), latency.count(), latency.count() / elapsedSeconds, metrics.failures(operation),
+                    latency.p50Nanos() / 1_000_000.0, latency.p95Nanos() / 1_000_000.0,
+                    latency.p99Nanos() / 1_000_000.0, latency.maxNanos() / 1_000_000.0);
+        }
+    }
+
+    private int intOption(String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
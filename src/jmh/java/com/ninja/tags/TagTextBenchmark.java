@@ -0,0 +1,48 @@
+package com.ninja.tags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting tag text on inline {@code &#RRGGBB} codes, and building the label message from the result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TagTextBenchmark {
+    @Param({"Ninja Master", "&#FF5555Ninja Master", "&#FF5555Ni&#FFAA00nj&#FFFF55a &#55FF55Ma&#5555FFst&#FF55FFer"})
+    public String text;
+
+    private TagDefinition tag;
+    private TagText compiled;
+
+    @Setup
+    public void setUp() {
+        tag = new TagDefinition("ninja", "Ninja", "#808080", text);
+        compiled = TagText.compile(tag);
+    }
+
+    @Benchmark
+    public TagText compile() {
+        return TagText.compile(tag);
+    }
+
+    @Benchmark
+    public Object toMessage() {
+        return compiled.toMessage();
+    }
+}
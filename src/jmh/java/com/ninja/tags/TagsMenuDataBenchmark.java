@@ -0,0 +1,69 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.server.core.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The repository side of building one page of the tags menu: the owned set, the visible set (optionally
+ * filtered), the page count, and the rendered text of each row on the page. The UI command strings themselves
+ * need the server and are not measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TagsMenuDataBenchmark {
+    @Param({"1000"})
+    public int tagCount;
+
+    @Param({"", "tag 1"})
+    public String filter;
+
+    @Param({"0", "5"})
+    public int page;
+
+    private Path dataFolder;
+    private TagRepository repository;
+    private UUID playerId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataFolder = BenchmarkData.createDataFolder("json", false, false, tagCount);
+        repository = BenchmarkData.openRepository(dataFolder);
+        playerId = BenchmarkData.playerId(0);
+        // A collector who owns every other tag, so both paging and the filter have work to do.
+        for (int i = 0; i < tagCount; i += 2) {
+            repository.grantTag(playerId, BenchmarkData.tagId(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.shutdown();
+        BenchmarkData.delete(dataFolder);
+    }
+
+    @Benchmark
+    public Message[] buildPage() {
+        return BenchmarkData.renderMenuPage(repository, playerId, filter, page);
+    }
+}
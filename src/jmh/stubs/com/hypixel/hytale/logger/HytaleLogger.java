@@ -0,0 +1,63 @@
+package com.hypixel.hytale.logger;
+
+import java.util.Locale;
+
+/**
+ * Benchmark stand-in for the server logger. Warnings and errors go to stderr; everything else is dropped so
+ * log formatting does not show up in measurements.
+ */
+public class HytaleLogger {
+    private static final Api DISCARD = new Api(null);
+
+    private final String name;
+
+    private HytaleLogger(String name) {
+        this.name = name;
+    }
+
+    public static HytaleLogger get(String name) {
+        return new HytaleLogger(name);
+    }
+
+    public Api atInfo() {
+        return DISCARD;
+    }
+
+    public Api atFine() {
+        return DISCARD;
+    }
+
+    public Api atWarning() {
+        return new Api(name + " WARN");
+    }
+
+    public Api atSevere() {
+        return new Api(name + " SEVERE");
+    }
+
+    public static final class Api {
+        private final String prefix;
+        private Throwable cause;
+
+        private Api(String prefix) {
+            this.prefix = prefix;
+        }
+
+        public Api withCause(Throwable cause) {
+            if (prefix != null) {
+                this.cause = cause;
+            }
+            return this;
+        }
+
+        public void log(String message, Object... args) {
+            if (prefix == null) {
+                return;
+            }
+            System.err.println(prefix + ": " + String.format(Locale.ROOT, message, args));
+            if (cause != null) {
+                cause.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.hypixel.hytale.server.core;
+
+/**
+ * Benchmark stand-in for the server's chat/UI message type. Keeps the text and colour so building a message
+ * still allocates roughly what the real one does.
+ */
+public class Message {
+    private final String text;
+    private final Message[] children;
+    private String color;
+
+    private Message(String text, Message[] children) {
+        this.text = text;
+        this.children = children;
+    }
+
+    public static Message raw(String text) {
+        return new Message(text, null);
+    }
+
+    public static Message join(Message... messages) {
+        return new Message(null, messages);
+    }
+
+    public Message color(String color) {
+        this.color = color;
+        return this;
+    }
+}
@@ -0,0 +1,10 @@
+package com.hypixel.hytale.server.core.command.system;
+
+import com.hypixel.hytale.server.core.Message;
+
+/**
+ * Benchmark stand-in for the server's command sender; only receives feedback messages.
+ */
+public interface CommandSender {
+    void sendMessage(Message message);
+}
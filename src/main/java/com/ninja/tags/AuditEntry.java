@@ -0,0 +1,21 @@
+package com.ninja.tags;
+
+import java.util.UUID;
+
+/**
+ * One line of the audit log.
+ *
+ * @param player     the affected player, or null for changes without one, such as an import summary
+ * @param playerName the player's name when it was known to the command
+ * @param detail     free text such as an expiry time or bulk target, or null
+ */
+public record AuditEntry(
+        long time,
+        String actor,
+        String action,
+        UUID player,
+        String playerName,
+        String tag,
+        String detail
+) {
+}
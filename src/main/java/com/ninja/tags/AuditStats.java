@@ -0,0 +1,14 @@
+package com.ninja.tags;
+
+/**
+ * @param dropped entries lost because the buffer was full or a write failed; nonzero means the disk cannot keep up
+ */
+public record AuditStats(
+        boolean enabled,
+        long recorded,
+        long written,
+        long dropped,
+        long pending,
+        int segment
+) {
+}
@@ -0,0 +1,452 @@
+package com.ninja.tags;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Memory-mapped binary snapshot of player tag data. Opening the store only maps the file and reads the tag-id
+ * dictionary; player records are decoded on demand, so with lazy loading startup cost does not grow with the
+ * number of players.
+ * <p>
+ * Layout (big-endian): {@code "NTAG"}, format version, varint tag count and length-prefixed UTF-8 tag ids,
+ * player count, then a UUID-sorted index of fixed 20-byte entries (UUID msb, lsb, record offset) followed by
+ * the records. A record is a varint tag count, that many varint dictionary indexes, and the equipped tag's
+ * dictionary index plus one (zero for none).
+ * <p>
+ * Writes merge the mutations into the current snapshot and replace the file atomically. Unchanged records are
+ * copied byte for byte, and new tag ids are appended to the dictionary so existing indexes stay valid.
+ */
+final class BinaryPlayerTagStore implements PlayerTagStore {
+    private static final int MAGIC = 0x4E544147;
+    private static final int VERSION = 1;
+    private static final int INDEX_ENTRY_BYTES = 20;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(ByteOrder.BIG_ENDIAN);
+
+    private final Path file;
+    private Arena arena;
+    private MemorySegment segment;
+    private String[] dictionary = new String[0];
+    private int playerCount;
+    private long indexStart;
+    private long recordsStart;
+
+    private BinaryPlayerTagStore(Path file) {
+        this.file = file;
+    }
+
+    static BinaryPlayerTagStore open(Path file) throws IOException {
+        BinaryPlayerTagStore store = new BinaryPlayerTagStore(file);
+        store.map();
+        return store;
+    }
+
+    static boolean exists(Path file) {
+        return Files.isRegularFile(file);
+    }
+
+    @Override
+    public boolean loadsPlayersIndividually() {
+        return true;
+    }
+
+    @Override
+    public synchronized PlayerTagRecord load(UUID playerId) {
+        int position = find(playerId.getMostSignificantBits(), playerId.getLeastSignificantBits());
+        return position < 0 ? new PlayerTagRecord() : decode(position);
+    }
+
+    @Override
+    public synchronized Map<UUID, PlayerTagRecord> loadAll() {
+        Map<UUID, PlayerTagRecord> players = new HashMap<>(playerCount * 2);
+        for (int position = 0; position < playerCount; position++) {
+            players.put(uuidAt(position), decode(position));
+        }
+        return players;
+    }
+
+    @Override
+    public synchronized void forEachEquipped(BiConsumer<UUID, String> action) {
+        Cursor cursor = new Cursor();
+        for (int position = 0; position < playerCount; position++) {
+            cursor.position = recordOffset(position);
+            int tagCount = cursor.readVarint(segment);
+            for (int i = 0; i < tagCount; i++) {
+                cursor.readVarint(segment);
+            }
+            int equipped = cursor.readVarint(segment) - 1;
+            if (equipped >= 0) {
+                action.accept(uuidAt(position), dictionary[equipped]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void forEachOwner(String tagId, Consumer<UUID> action) {
+        int wanted = Arrays.asList(dictionary).indexOf(tagId);
+        if (wanted < 0) {
+            return;
+        }
+        Cursor cursor = new Cursor();
+        for (int position = 0; position < playerCount; position++) {
+            cursor.position = recordOffset(position);
+            int tagCount = cursor.readVarint(segment);
+            for (int i = 0; i < tagCount; i++) {
+                if (cursor.readVarint(segment) == wanted) {
+                    action.accept(uuidAt(position));
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void forEachPlayer(BiConsumer<UUID, PlayerTagRecord> action) {
+        for (int position = 0; position < playerCount; position++) {
+            action.accept(uuidAt(position), decode(position));
+        }
+    }
+
+    /**
+     * Merges {@code players} into the snapshot, as used when importing from another format.
+     */
+    synchronized void importAll(Map<UUID, PlayerTagRecord> players) throws IOException {
+        List<TagMutation> mutations = new ArrayList<>();
+        for (Map.Entry<UUID, PlayerTagRecord> entry : players.entrySet()) {
+            for (String tagId : entry.getValue().tags) {
+                mutations.add(new TagMutation(entry.getKey(), TagMutation.Type.GRANT, tagId));
+            }
+            if (entry.getValue().equippedTag != null) {
+                mutations.add(new TagMutation(entry.getKey(), TagMutation.Type.EQUIP, entry.getValue().equippedTag));
+            }
+        }
+        write(mutations, null);
+    }
+
+    @Override
+    public synchronized void write(List<TagMutation> mutations, Supplier<Map<UUID, PlayerTagRecord>> snapshot) throws IOException {
+        if (mutations.isEmpty()) {
+            return;
+        }
+
+        Map<UUID, PlayerTagRecord> changed = new HashMap<>();
+        for (TagMutation mutation : mutations) {
+            PlayerTagRecord record = changed.computeIfAbsent(mutation.playerId(), this::load);
+            switch (mutation.type()) {
+                case GRANT -> {
+                    if (!record.tags.contains(mutation.tagId())) {
+                        record.tags.add(mutation.tagId());
+                    }
+                }
+                case REVOKE -> record.tags.remove(mutation.tagId());
+                case EQUIP -> record.equippedTag = mutation.tagId();
+            }
+        }
+
+        Map<String, Integer> dictionaryIndex = new LinkedHashMap<>();
+        for (String tagId : dictionary) {
+            dictionaryIndex.putIfAbsent(tagId, dictionaryIndex.size());
+        }
+        for (PlayerTagRecord record : changed.values()) {
+            record.tags.forEach(tagId -> dictionaryIndex.putIfAbsent(tagId, dictionaryIndex.size()));
+            if (record.equippedTag != null) {
+                dictionaryIndex.putIfAbsent(record.equippedTag, dictionaryIndex.size());
+            }
+        }
+
+        UUID[] changedIds = changed.keySet().toArray(new UUID[0]);
+        Arrays.sort(changedIds, BinaryPlayerTagStore::compareIds);
+
+        ByteSink index = new ByteSink(Math.max(64, (playerCount + changedIds.length) * INDEX_ENTRY_BYTES));
+        ByteSink records = new ByteSink(Math.max(64, (int) Math.min(Integer.MAX_VALUE - 8, segment.byteSize() - recordsStart + changedIds.length * 8L)));
+        int written = 0;
+        int oldPosition = 0;
+        int changedPosition = 0;
+        // Consecutive unchanged records are contiguous in the old file, so they are copied as one run.
+        long runStart = -1;
+        long runEnd = -1;
+        while (oldPosition < playerCount || changedPosition < changedIds.length) {
+            long oldMsb = oldPosition < playerCount ? segment.get(LONG, indexStart + (long) oldPosition * INDEX_ENTRY_BYTES) : 0;
+            long oldLsb = oldPosition < playerCount ? segment.get(LONG, indexStart + (long) oldPosition * INDEX_ENTRY_BYTES + 8) : 0;
+            int order = oldPosition >= playerCount ? 1
+                    : changedPosition >= changedIds.length ? -1
+                    : compare(oldMsb, oldLsb, changedIds[changedPosition].getMostSignificantBits(), changedIds[changedPosition].getLeastSignificantBits());
+
+            if (order < 0) {
+                index.writeLong(oldMsb);
+                index.writeLong(oldLsb);
+                long start = recordOffset(oldPosition);
+                if (runStart < 0) {
+                    runStart = start;
+                }
+                index.writeInt(records.size + (int) (start - runStart));
+                runEnd = oldPosition + 1 < playerCount ? recordOffset(oldPosition + 1) : segment.byteSize();
+                written++;
+                oldPosition++;
+                continue;
+            }
+
+            UUID playerId = changedIds[changedPosition++];
+            if (order == 0) {
+                oldPosition++;
+            }
+            PlayerTagRecord record = changed.get(playerId).normalize();
+            if (runStart >= 0) {
+                records.write(segment, runStart, (int) (runEnd - runStart));
+                runStart = -1;
+            }
+            if (record.tags.isEmpty() && record.equippedTag == null) {
+                continue;
+            }
+            index.writeLong(playerId.getMostSignificantBits());
+            index.writeLong(playerId.getLeastSignificantBits());
+            index.writeInt(records.size);
+            records.writeVarint(record.tags.size());
+            for (String tagId : record.tags) {
+                records.writeVarint(dictionaryIndex.get(tagId));
+            }
+            records.writeVarint(record.equippedTag == null ? 0 : dictionaryIndex.get(record.equippedTag) + 1);
+            written++;
+        }
+        if (runStart >= 0) {
+            records.write(segment, runStart, (int) (runEnd - runStart));
+        }
+
+        try {
+            writeFile(dictionaryIndex.keySet(), written, index, records);
+        } finally {
+            // Maps the new file, or remaps the old one if it could not be replaced.
+            map();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (arena != null) {
+            arena.close();
+            arena = null;
+        }
+    }
+
+    private void writeFile(Iterable<String> tagIds, int players, ByteSink index, ByteSink records) throws IOException {
+        // Write beside the live file and swap it in, so a crash mid-write never truncates the only copy.
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            ByteSink header = new ByteSink(256);
+            int tagCount = 0;
+            for (String tagId : tagIds) {
+                byte[] bytes = tagId.getBytes(StandardCharsets.UTF_8);
+                header.writeVarint(bytes.length);
+                header.write(bytes);
+                tagCount++;
+            }
+            ByteSink count = new ByteSink(8);
+            count.writeVarint(tagCount);
+            out.write(count.bytes, 0, count.size);
+            out.write(header.bytes, 0, header.size);
+            out.writeInt(players);
+            out.write(index.bytes, 0, index.size);
+            out.write(records.bytes, 0, records.size);
+            out.flush();
+            channel.force(true);
+        }
+
+        // The old mapping must be released before the file under it is replaced.
+        close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void map() throws IOException {
+        close();
+        if (!Files.exists(file)) {
+            arena = Arena.ofShared();
+            segment = MemorySegment.NULL;
+            dictionary = new String[0];
+            playerCount = 0;
+            indexStart = 0;
+            recordsStart = 0;
+            return;
+        }
+
+        Arena mappedArena = Arena.ofShared();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MemorySegment mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), mappedArena);
+            if (mapped.byteSize() < 8 || mapped.get(INT, 0) != MAGIC) {
+                throw new IOException("Not a NinjaTags binary snapshot: " + file);
+            }
+            int version = mapped.get(INT, 4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary snapshot version " + version + " in " + file);
+            }
+
+            Cursor cursor = new Cursor();
+            cursor.position = 8;
+            String[] tagIds = new String[cursor.readVarint(mapped)];
+            for (int i = 0; i < tagIds.length; i++) {
+                int length = cursor.readVarint(mapped);
+                byte[] bytes = new byte[length];
+                MemorySegment.copy(mapped, ValueLayout.JAVA_BYTE, cursor.position, bytes, 0, length);
+                cursor.position += length;
+                tagIds[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int players = mapped.get(INT, cursor.position);
+            long indexOffset = cursor.position + 4;
+            long recordsOffset = indexOffset + (long) players * INDEX_ENTRY_BYTES;
+            if (players < 0 || recordsOffset > mapped.byteSize()) {
+                throw new IOException("Truncated binary snapshot: " + file);
+            }
+
+            arena = mappedArena;
+            segment = mapped;
+            dictionary = tagIds;
+            playerCount = players;
+            indexStart = indexOffset;
+            recordsStart = recordsOffset;
+        } catch (IOException | RuntimeException e) {
+            mappedArena.close();
+            throw e instanceof IOException io ? io : new IOException("Failed to map " + file, e);
+        }
+    }
+
+    private int find(long msb, long lsb) {
+        int low = 0;
+        int high = playerCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long entry = indexStart + (long) mid * INDEX_ENTRY_BYTES;
+            int order = compare(segment.get(LONG, entry), segment.get(LONG, entry + 8), msb, lsb);
+            if (order < 0) {
+                low = mid + 1;
+            } else if (order > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private UUID uuidAt(int position) {
+        long entry = indexStart + (long) position * INDEX_ENTRY_BYTES;
+        return new UUID(segment.get(LONG, entry), segment.get(LONG, entry + 8));
+    }
+
+    private long recordOffset(int position) {
+        return recordsStart + Integer.toUnsignedLong(segment.get(INT, indexStart + (long) position * INDEX_ENTRY_BYTES + 16));
+    }
+
+    private PlayerTagRecord decode(int position) {
+        Cursor cursor = new Cursor();
+        cursor.position = recordOffset(position);
+        PlayerTagRecord record = new PlayerTagRecord();
+        int tagCount = cursor.readVarint(segment);
+        for (int i = 0; i < tagCount; i++) {
+            record.tags.add(dictionary[cursor.readVarint(segment)]);
+        }
+        int equipped = cursor.readVarint(segment) - 1;
+        record.equippedTag = equipped < 0 ? null : dictionary[equipped];
+        return record;
+    }
+
+    private static int compareIds(UUID left, UUID right) {
+        return compare(left.getMostSignificantBits(), left.getLeastSignificantBits(), right.getMostSignificantBits(), right.getLeastSignificantBits());
+    }
+
+    private static int compare(long leftMsb, long leftLsb, long rightMsb, long rightLsb) {
+        int order = Long.compare(leftMsb, rightMsb);
+        return order != 0 ? order : Long.compare(leftLsb, rightLsb);
+    }
+
+    private static final class Cursor {
+        private long position;
+
+        int readVarint(MemorySegment source) {
+            int value = 0;
+            int shift = 0;
+            while (true) {
+                byte next = source.get(ValueLayout.JAVA_BYTE, position++);
+                value |= (next & 0x7F) << shift;
+                if (next >= 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+    }
+
+    private static final class ByteSink {
+        private byte[] bytes;
+        private int size;
+
+        ByteSink(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void write(byte[] source) {
+            ensure(source.length);
+            System.arraycopy(source, 0, bytes, size, source.length);
+            size += source.length;
+        }
+
+        void write(MemorySegment source, long offset, int length) {
+            ensure(length);
+            MemorySegment.copy(source, ValueLayout.JAVA_BYTE, offset, bytes, size, length);
+            size += length;
+        }
+
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Grants or revokes one tag for many players on a background thread. Changes are applied in batches and
+ * persisted once at the end; players who lose their equipped tag get their suffix refreshed afterwards.
+ * Each batch runs on the {@link TagCommandQueue} writer, between other tag changes.
+ */
+public class BulkTagRunner {
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final TagRepository tagRepository;
+    private final SuffixReconciler suffixReconciler;
+    private final TagExpiries tagExpiries;
+    private final TagCommandQueue commands;
+    private final TagAuditLog auditLog;
+    private final int batchSize;
+    private final HytaleLogger logger;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-bulk");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    BulkTagRunner(TagRepository tagRepository, SuffixReconciler suffixReconciler, TagExpiries tagExpiries, TagCommandQueue commands,
+                  TagAuditLog auditLog, int batchSize, HytaleLogger logger) {
+        this.tagRepository = tagRepository;
+        this.suffixReconciler = suffixReconciler;
+        this.tagExpiries = tagExpiries;
+        this.commands = commands;
+        this.auditLog = auditLog;
+        this.batchSize = batchSize;
+        this.logger = logger;
+    }
+
+    /**
+     * Starts a bulk change in the background. {@code targets} is resolved on the worker thread, and each player
+     * actually changed is audited under {@code actor}. Returns false if another bulk change is still running.
+     */
+    public boolean runAsync(String actor, Action action, String tagId, String targetDescription, Callable<? extends Collection<UUID>> targets, Consumer<String> progress) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                run(actor, action, tagId, targetDescription, targets, progress);
+            } catch (Exception e) {
+                logger.atSevere().withCause(e).log("Bulk %s of %s failed", action.verb, tagId);
+                progress.accept("Bulk " + action.verb + " of " + tagId + " failed: " + e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(String actor, Action action, String tagId, String targetDescription, Callable<? extends Collection<UUID>> targets, Consumer<String> progress) throws Exception {
+        long started = System.nanoTime();
+        List<UUID> players = new ArrayList<>(new LinkedHashSet<>(targets.call()));
+        progress.accept(String.format(Locale.ROOT, "Bulk %s of %s for %d players (%s)...", action.verb, tagId, players.size(), targetDescription));
+
+        int changed = 0;
+        List<UUID> unequipped = new ArrayList<>();
+        long lastReport = System.nanoTime();
+        for (int batchStart = 0; batchStart < players.size(); batchStart += batchSize) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Interrupted after " + batchStart + " players");
+            }
+            List<UUID> batch = players.subList(batchStart, Math.min(players.size(), batchStart + batchSize));
+            // Bulk grants are permanent, and revoked tags must not be revoked again by a stale deadline.
+            tagExpiries.cancel(batch, tagId);
+            String detail = "bulk: " + targetDescription;
+            changed += commands.call(() -> apply(actor, action, tagId, detail, batch, unequipped)).join();
+
+            int done = Math.min(players.size(), batchStart + batchSize);
+            long now = System.nanoTime();
+            if (done < players.size() && now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                lastReport = now;
+                progress.accept(String.format(Locale.ROOT, "Bulk %s: %d/%d (%.0f players/s)", action.verb, done, players.size(), ratePerSecond(done, elapsedMillis(started))));
+            }
+        }
+
+        long persistStarted = System.nanoTime();
+        tagRepository.flush();
+        long persistMillis = elapsedMillis(persistStarted);
+        long elapsed = elapsedMillis(started);
+        progress.accept(String.format(Locale.ROOT,
+                "Bulk %s of %s done: targeted=%d changed=%d unchanged=%d in %dms (%.0f players/s, persist %dms).",
+                action.verb, tagId, players.size(), changed, players.size() - changed, elapsed, ratePerSecond(players.size(), elapsed), persistMillis));
+
+        if (!unequipped.isEmpty()) {
+            progress.accept("Clearing suffixes for " + unequipped.size() + " players who had " + tagId + " equipped...");
+            suffixReconciler.refreshAsync(unequipped, progress);
+        }
+    }
+
+    // Runs on the writer.
+    private int apply(String actor, Action action, String tagId, String detail, List<UUID> batch, List<UUID> unequipped) {
+        int changed = 0;
+        for (UUID playerId : batch) {
+            if (action == Action.GRANT) {
+                if (tagRepository.grantTag(playerId, tagId)) {
+                    changed++;
+                    auditLog.record(actor, action.verb, playerId, null, tagId, detail);
+                }
+            } else if (tagRepository.revokeTag(playerId, tagId)) {
+                changed++;
+                auditLog.record(actor, action.verb, playerId, null, tagId, detail);
+                if (tagId.equals(tagRepository.getEquippedTag(playerId)) && !tagRepository.playerHasTag(playerId, tagId)) {
+                    tagRepository.setEquippedTag(playerId, null);
+                    unequipped.add(playerId);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Reads one player UUID per line, skipping blank lines and lines starting with {@code #}.
+     */
+    static List<UUID> readPlayerIds(Path file, Consumer<String> progress) throws IOException {
+        List<UUID> playerIds = new ArrayList<>();
+        int invalid = 0;
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    playerIds.add(UUID.fromString(line));
+                } catch (IllegalArgumentException e) {
+                    invalid++;
+                }
+            }
+        }
+        if (invalid > 0) {
+            progress.accept("Skipped " + invalid + " lines in " + file.getFileName() + " that are not UUIDs.");
+        }
+        return playerIds;
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000L;
+    }
+
+    private static double ratePerSecond(int count, long elapsedMillis) {
+        return elapsedMillis <= 0 ? count : count * 1000.0 / elapsedMillis;
+    }
+
+    public enum Action {
+        GRANT("grant"),
+        REVOKE("revoke");
+
+        private final String verb;
+
+        Action(String verb) {
+            this.verb = verb;
+        }
+    }
+}
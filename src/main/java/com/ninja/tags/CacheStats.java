@@ -0,0 +1,10 @@
+package com.ninja.tags;
+
+public record CacheStats(
+        boolean lazyLoading,
+        int cachedPlayers,
+        long hits,
+        long misses,
+        long evictions
+) {
+}
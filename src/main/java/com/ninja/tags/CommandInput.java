@@ -0,0 +1,72 @@
+package com.ninja.tags;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses raw command input: splits it into arguments and reads durations such as {@code 7d} or {@code 1h30m}.
+ */
+final class CommandInput {
+    // Far enough for "forever" while keeping now + duration well inside Instant's range.
+    static final Duration MAX_DURATION = Duration.ofDays(36500);
+
+    private CommandInput() {
+    }
+
+    static List<String> split(String input) {
+        String trimmed = input == null ? "" : input.trim();
+        if (trimmed.isEmpty()) {
+            return List.of();
+        }
+
+        String[] split = trimmed.split("\\s+");
+        List<String> out = new ArrayList<>(split.length);
+        for (String arg : split) {
+            if (!arg.isBlank()) {
+                out.add(arg);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Parses one or more {@code <number><unit>} parts, with units {@code d}, {@code h}, {@code m} and {@code s}.
+     * Returns null if the text is not a positive duration of at most {@link #MAX_DURATION}.
+     */
+    static Duration parseDuration(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        Duration total = Duration.ZERO;
+        long amount = -1;
+        try {
+            for (int i = 0; i < lower.length(); i++) {
+                char c = lower.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    amount = Math.addExact(Math.multiplyExact(Math.max(amount, 0), 10), c - '0');
+                    continue;
+                }
+                if (amount < 0) {
+                    return null;
+                }
+                total = switch (c) {
+                    case 'd' -> total.plusDays(amount);
+                    case 'h' -> total.plusHours(amount);
+                    case 'm' -> total.plusMinutes(amount);
+                    case 's' -> total.plusSeconds(amount);
+                    default -> null;
+                };
+                if (total == null) {
+                    return null;
+                }
+                amount = -1;
+            }
+        } catch (ArithmeticException e) {
+            return null;
+        }
+        return amount >= 0 || total.isZero() || total.compareTo(MAX_DURATION) > 0 ? null : total;
+    }
+}
@@ -0,0 +1,10 @@
+package com.ninja.tags;
+
+/**
+ * @param coalesced equips and de-equips folded into a later command for the same player before reaching LuckPerms
+ */
+public record CommandQueueStats(
+        long submitted,
+        long coalesced
+) {
+}
@@ -0,0 +1,23 @@
+package com.ninja.tags;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Supplies the permission data that entitlement rules are checked against, and says when it changes.
+ */
+interface EntitlementSource {
+    /**
+     * The player's permission data, or null while it is not loaded.
+     */
+    PermissionSubject subject(UUID playerId);
+
+    /**
+     * Calls {@code listener} with a player's id whenever that player's permission data was recalculated.
+     * Returns false if the source cannot report changes right now.
+     */
+    boolean subscribe(Consumer<UUID> listener);
+
+    default void shutdown() {
+    }
+}
@@ -0,0 +1,11 @@
+package com.ninja.tags;
+
+public record EntitlementStats(
+        boolean enabled,
+        int cachedPlayers,
+        long hits,
+        long evaluations,
+        long invalidations
+) {
+    static final EntitlementStats DISABLED = new EntitlementStats(false, 0, 0, 0, 0);
+}
@@ -0,0 +1,11 @@
+package com.ninja.tags;
+
+/**
+ * @param nextExpiryMillis epoch milliseconds of the earliest pending expiry, or -1 if there is none
+ */
+public record ExpiryStats(
+        int pending,
+        long expired,
+        long nextExpiryMillis
+) {
+}
@@ -0,0 +1,78 @@
+package com.ninja.tags;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suffix backend held in memory, for servers without LuckPerms and for load tests. Each write completes after
+ * {@code latencyMillis} plus up to {@code jitterMillis}, roughly like a LuckPerms storage round trip.
+ */
+final class InMemorySuffixBackend implements SuffixBackend {
+    private final Map<UUID, String> suffixes = new ConcurrentHashMap<>();
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final ScheduledExecutorService scheduler;
+
+    InMemorySuffixBackend(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.jitterMillis = Math.max(0, jitterMillis);
+        this.scheduler = this.latencyMillis == 0 && this.jitterMillis == 0 ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ninjatags-memory-suffix");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> writeSuffix(UUID playerId, String suffix) {
+        if (scheduler == null) {
+            apply(playerId, suffix);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        long delayMillis = latencyMillis + (jitterMillis == 0 ? 0 : ThreadLocalRandom.current().nextLong(jitterMillis + 1));
+        CompletableFuture<Void> write = new CompletableFuture<>();
+        scheduler.schedule(() -> {
+            apply(playerId, suffix);
+            write.complete(null);
+        }, delayMillis, TimeUnit.MILLISECONDS);
+        return write;
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> loadManagedSuffixes() {
+        return CompletableFuture.completedFuture(new HashMap<>(suffixes));
+    }
+
+    @Override
+    public boolean hasSuffix(UUID playerId, String suffix) {
+        return Objects.equals(suffixes.get(playerId), suffix);
+    }
+
+    @Override
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    String suffix(UUID playerId) {
+        return suffixes.get(playerId);
+    }
+
+    private void apply(UUID playerId, String suffix) {
+        if (suffix == null) {
+            suffixes.remove(playerId);
+        } else {
+            suffixes.put(playerId, suffix);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * JSON snapshot plus an append-only journal of grant, revoke and equip records. Each save appends
+ * only the new records; once the journal grows past the configured size it is rotated and folded
+ * into a fresh snapshot on a background thread.
+ */
+final class JournaledPlayerTagStore implements PlayerTagStore {
+    private static final byte RECORD_GRANT = 'G';
+    private static final byte RECORD_REVOKE = 'R';
+    private static final byte RECORD_EQUIP = 'E';
+
+    private final JsonPlayerTagStore snapshotStore;
+    private final Path journalFile;
+    private final Path compactingFile;
+    private final int compactThreshold;
+    private final HytaleLogger logger;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FileChannel journal;
+    private long journalRecords;
+
+    JournaledPlayerTagStore(JsonPlayerTagStore snapshotStore, Path snapshotFile, int compactThreshold, HytaleLogger logger) {
+        this.snapshotStore = snapshotStore;
+        this.journalFile = journalFileFor(snapshotFile);
+        this.compactingFile = journalFile.resolveSibling(journalFile.getFileName() + ".compacting");
+        this.compactThreshold = compactThreshold;
+        this.logger = logger;
+    }
+
+    static Path journalFileFor(Path snapshotFile) {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName().toString().replaceFirst("\\.json$", "") + ".journal");
+    }
+
+    @Override
+    public synchronized Map<UUID, PlayerTagRecord> loadAll() throws IOException {
+        Map<UUID, PlayerTagRecord> players = snapshotStore.loadAll();
+        boolean interruptedCompaction = Files.exists(compactingFile);
+        long replayed = 0;
+        if (interruptedCompaction) {
+            replayed += replay(compactingFile, players, true);
+        }
+        replayed += replay(journalFile, players, true);
+
+        if (interruptedCompaction) {
+            // A previous compaction never finished; fold everything now so rotation starts clean.
+            snapshotStore.writeSnapshot(players);
+            Files.deleteIfExists(compactingFile);
+            Files.deleteIfExists(journalFile);
+            replayed = 0;
+        }
+
+        journalRecords = replayed;
+        openJournal();
+        if (replayed > 0) {
+            logger.atInfo().log("Replayed %s journal records from %s.", replayed, journalFile);
+        }
+        return players;
+    }
+
+    /**
+     * Reads the snapshot and replays both journals without repairing them. The compacting journal cannot be
+     * deleted meanwhile, so records it holds are never missed.
+     */
+    @Override
+    public synchronized PlayerTagRecord load(UUID playerId) throws IOException {
+        Map<UUID, PlayerTagRecord> players = snapshotStore.loadAll();
+        replay(compactingFile, players, false);
+        replay(journalFile, players, false);
+        PlayerTagRecord data = players.get(playerId);
+        return data == null ? new PlayerTagRecord() : data;
+    }
+
+    @Override
+    public void write(List<TagMutation> mutations, Supplier<Map<UUID, PlayerTagRecord>> snapshot) throws IOException {
+        if (mutations.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(mutations.size() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            for (TagMutation mutation : mutations) {
+                writeRecord(out, mutation);
+            }
+        }
+
+        boolean shouldCompact;
+        synchronized (this) {
+            if (journal == null) {
+                openJournal();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+            journalRecords += mutations.size();
+            shouldCompact = journalRecords >= compactThreshold;
+        }
+
+        if (shouldCompact && compacting.compareAndSet(false, true)) {
+            compactor.execute(() -> compact(snapshot));
+        }
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+        try {
+            if (!compactor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.atWarning().log("Journal compaction still running at shutdown; the journal will be replayed on next start.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this) {
+            closeJournal();
+        }
+    }
+
+    private void compact(Supplier<Map<UUID, PlayerTagRecord>> snapshot) {
+        try {
+            synchronized (this) {
+                closeJournal();
+                rotateJournal();
+                journalRecords = 0;
+                openJournal();
+            }
+
+            // Taken after rotation, so it covers every record in the rotated file. Records appended to the
+            // new journal meanwhile are idempotent and replay cleanly on top of this snapshot.
+            snapshotStore.writeSnapshot(snapshot.get());
+            synchronized (this) {
+                Files.deleteIfExists(compactingFile);
+            }
+            logger.atInfo().log("Compacted %s into a fresh snapshot.", journalFile);
+        } catch (IOException | RuntimeException e) {
+            logger.atSevere().withCause(e).log("Failed to compact %s; it will be replayed on next start.", journalFile);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    private void rotateJournal() throws IOException {
+        if (!Files.exists(compactingFile)) {
+            Files.move(journalFile, compactingFile, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+
+        // An earlier compaction failed after rotating; keep its records ahead of the current journal.
+        try (FileChannel target = FileChannel.open(compactingFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileChannel source = FileChannel.open(journalFile, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = source.size();
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+            target.force(false);
+        }
+        Files.delete(journalFile);
+    }
+
+    private long replay(Path file, Map<UUID, PlayerTagRecord> players, boolean truncateTornTail) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        long records = 0;
+        long validBytes = 0;
+        try (InputStream raw = Files.newInputStream(file);
+             CountingInputStream counted = new CountingInputStream(new BufferedInputStream(raw));
+             DataInputStream in = new DataInputStream(counted)) {
+            while (true) {
+                TagMutation mutation;
+                try {
+                    mutation = readRecord(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                apply(players, mutation);
+                records++;
+                validBytes = counted.count;
+            }
+        } catch (IOException | IllegalStateException e) {
+            logger.atWarning().withCause(e).log("Stopped replaying %s at a damaged record after %s records.", file, records);
+        }
+
+        if (truncateTornTail && validBytes < Files.size(file)) {
+            // Drop a torn tail left by a crash mid-append so later appends stay readable.
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validBytes);
+            }
+        }
+        return records;
+    }
+
+    private static void apply(Map<UUID, PlayerTagRecord> players, TagMutation mutation) {
+        PlayerTagRecord data = players.computeIfAbsent(mutation.playerId(), ignored -> new PlayerTagRecord());
+        switch (mutation.type()) {
+            case GRANT -> {
+                if (!data.tags.contains(mutation.tagId())) {
+                    data.tags.add(mutation.tagId());
+                }
+            }
+            case REVOKE -> data.tags.remove(mutation.tagId());
+            case EQUIP -> data.equippedTag = mutation.tagId();
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, TagMutation mutation) throws IOException {
+        out.writeByte(switch (mutation.type()) {
+            case GRANT -> RECORD_GRANT;
+            case REVOKE -> RECORD_REVOKE;
+            case EQUIP -> RECORD_EQUIP;
+        });
+        out.writeUTF(mutation.playerId().toString());
+        out.writeBoolean(mutation.tagId() != null);
+        if (mutation.tagId() != null) {
+            out.writeUTF(mutation.tagId());
+        }
+    }
+
+    private static TagMutation readRecord(DataInputStream in) throws IOException {
+        int kind = in.read();
+        if (kind < 0) {
+            throw new EOFException();
+        }
+        TagMutation.Type type = switch (kind) {
+            case RECORD_GRANT -> TagMutation.Type.GRANT;
+            case RECORD_REVOKE -> TagMutation.Type.REVOKE;
+            case RECORD_EQUIP -> TagMutation.Type.EQUIP;
+            default -> throw new IllegalStateException("Unknown journal record type " + kind);
+        };
+        UUID playerId;
+        try {
+            playerId = UUID.fromString(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid player id in journal record", e);
+        }
+        String tagId = in.readBoolean() ? in.readUTF() : null;
+        return new TagMutation(playerId, type, tagId);
+    }
+
+    private void openJournal() throws IOException {
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.atWarning().withCause(e).log("Failed to close %s", journalFile);
+        }
+        journal = null;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.ninja.tags;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+final class JsonPlayerTagStore implements PlayerTagStore {
+    static final Type PLAYER_DATA_TYPE = new TypeToken<Map<String, PlayerTagRecord>>() {
+    }.getType();
+
+    private final Path file;
+    private final Gson gson;
+    private final HytaleLogger logger;
+
+    JsonPlayerTagStore(Path file, Gson gson, HytaleLogger logger) {
+        this.file = file;
+        this.gson = gson;
+        this.logger = logger;
+    }
+
+    @Override
+    public Map<UUID, PlayerTagRecord> loadAll() throws IOException {
+        Map<UUID, PlayerTagRecord> players = new HashMap<>();
+        if (!Files.exists(file)) {
+            return players;
+        }
+
+        Map<String, PlayerTagRecord> loaded;
+        try (Reader in = Files.newBufferedReader(file)) {
+            loaded = gson.fromJson(in, PLAYER_DATA_TYPE);
+        }
+        if (loaded == null) {
+            return players;
+        }
+
+        for (Map.Entry<String, PlayerTagRecord> entry : loaded.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            try {
+                players.put(UUID.fromString(entry.getKey()), entry.getValue().normalize());
+            } catch (IllegalArgumentException e) {
+                logger.atWarning().log("Skipping invalid player id in %s: %s", file, entry.getKey());
+            }
+        }
+        return players;
+    }
+
+    @Override
+    public PlayerTagRecord load(UUID playerId) throws IOException {
+        PlayerTagRecord data = loadAll().get(playerId);
+        return data == null ? new PlayerTagRecord() : data;
+    }
+
+    @Override
+    public void write(List<TagMutation> mutations, Supplier<Map<UUID, PlayerTagRecord>> snapshot) throws IOException {
+        writeSnapshot(snapshot.get());
+    }
+
+    void writeSnapshot(Map<UUID, PlayerTagRecord> players) throws IOException {
+        Map<String, PlayerTagRecord> serialized = new LinkedHashMap<>(players.size() * 2);
+        for (Map.Entry<UUID, PlayerTagRecord> entry : players.entrySet()) {
+            serialized.put(entry.getKey().toString(), entry.getValue());
+        }
+
+        // Write beside the live file and swap it in, so a crash mid-write never truncates the only copy.
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            gson.toJson(serialized, PLAYER_DATA_TYPE, out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,82 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import net.luckperms.api.model.user.User;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Checks entitlement rules against LuckPerms' cached user data, and listens for {@link UserDataRecalculateEvent}
+ * so cached results are dropped only when a user's groups, permissions or meta actually changed.
+ */
+final class LuckPermsEntitlementSource implements EntitlementSource {
+    private final HytaleLogger logger;
+    private volatile EventSubscription<UserDataRecalculateEvent> subscription;
+
+    LuckPermsEntitlementSource(HytaleLogger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public PermissionSubject subject(UUID playerId) {
+        LuckPerms luckPerms = getLuckPerms();
+        User user = luckPerms == null ? null : luckPerms.getUserManager().getUser(playerId);
+        if (user == null) {
+            return null;
+        }
+        CachedDataManager data = user.getCachedData();
+        return new PermissionSubject() {
+            @Override
+            public boolean inGroup(String group) {
+                // LuckPerms resolves inherited groups as group.<name> permissions.
+                return data.getPermissionData().checkPermission("group." + group.toLowerCase(Locale.ROOT)).asBoolean();
+            }
+
+            @Override
+            public boolean hasPermission(String node) {
+                return data.getPermissionData().checkPermission(node).asBoolean();
+            }
+
+            @Override
+            public String meta(String key) {
+                return data.getMetaData().getMetaValue(key);
+            }
+        };
+    }
+
+    @Override
+    public boolean subscribe(Consumer<UUID> listener) {
+        LuckPerms luckPerms = getLuckPerms();
+        if (luckPerms == null) {
+            return false;
+        }
+        subscription = luckPerms.getEventBus().subscribe(UserDataRecalculateEvent.class,
+                event -> listener.accept(event.getUser().getUniqueId()));
+        return true;
+    }
+
+    @Override
+    public void shutdown() {
+        EventSubscription<UserDataRecalculateEvent> active = subscription;
+        subscription = null;
+        if (active != null) {
+            active.close();
+        }
+    }
+
+    private LuckPerms getLuckPerms() {
+        try {
+            return LuckPermsProvider.get();
+        } catch (IllegalStateException ex) {
+            logger.atWarning().log("LuckPerms was not available while checking tag entitlements.");
+            return null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeType;
+import net.luckperms.api.node.matcher.NodeMatcher;
+import net.luckperms.api.node.types.MetaNode;
+import net.luckperms.api.node.types.SuffixNode;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps the managed suffix as a LuckPerms suffix node, with a marker meta node recording which suffix is ours.
+ */
+final class LuckPermsSuffixBackend implements SuffixBackend {
+    private static final String META_KEY = "ninjatags_suffix";
+    private static final int TAG_PRIORITY = 100;
+
+    private final HytaleLogger logger;
+
+    LuckPermsSuffixBackend(HytaleLogger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public CompletableFuture<Void> writeSuffix(UUID playerId, String suffix) {
+        LuckPerms luckPerms = getLuckPerms();
+        if (luckPerms == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(LuckPermsTagService.NOT_LOADED_MESSAGE));
+        }
+        return luckPerms.getUserManager().modifyUser(playerId, user -> {
+            clearManagedNodes(user);
+            if (suffix != null) {
+                SuffixNode suffixNode = SuffixNode.builder(suffix, TAG_PRIORITY).build();
+                MetaNode marker = MetaNode.builder(META_KEY, suffix).build();
+                user.data().add(suffixNode);
+                user.data().add(marker);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> loadManagedSuffixes() {
+        LuckPerms luckPerms = getLuckPerms();
+        if (luckPerms == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(LuckPermsTagService.NOT_LOADED_MESSAGE));
+        }
+        return luckPerms.getUserManager().searchAll(NodeMatcher.metaKey(META_KEY)).thenApply(results -> {
+            Map<UUID, String> suffixes = new HashMap<>(results.size() * 2);
+            for (Map.Entry<UUID, Collection<MetaNode>> entry : results.entrySet()) {
+                for (MetaNode node : entry.getValue()) {
+                    suffixes.put(entry.getKey(), node.getMetaValue());
+                }
+            }
+            return suffixes;
+        });
+    }
+
+    @Override
+    public boolean hasSuffix(UUID playerId, String suffix) {
+        LuckPerms luckPerms = getLuckPerms();
+        User user = luckPerms == null ? null : luckPerms.getUserManager().getUser(playerId);
+        if (user == null) {
+            return false;
+        }
+        // Only the user's own nodes count: cached meta also sees values inherited from groups, and the marker can
+        // outlive a suffix node someone removed by hand.
+        int suffixes = 0;
+        boolean suffixMatches = false;
+        for (SuffixNode node : user.getNodes(NodeType.SUFFIX)) {
+            if (node.getPriority() == TAG_PRIORITY) {
+                suffixes++;
+                suffixMatches = node.getMetaValue().equals(suffix);
+            }
+        }
+        int markers = 0;
+        boolean markerMatches = false;
+        for (MetaNode node : user.getNodes(NodeType.META)) {
+            if (node.getMetaKey().equalsIgnoreCase(META_KEY)) {
+                markers++;
+                markerMatches = node.getMetaValue().equals(suffix);
+            }
+        }
+        return suffix == null
+                ? suffixes == 0 && markers == 0
+                : suffixes == 1 && suffixMatches && markers == 1 && markerMatches;
+    }
+
+    @Override
+    public CompletableFuture<Void> prefetch(UUID playerId) {
+        LuckPerms luckPerms = getLuckPerms();
+        if (luckPerms == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(LuckPermsTagService.NOT_LOADED_MESSAGE));
+        }
+        return luckPerms.getUserManager().loadUser(playerId).thenAccept(user -> {
+            // Cached data is calculated lazily; touch it so the first check does not pay for it.
+            user.getCachedData().getMetaData();
+            user.getCachedData().getPermissionData();
+        });
+    }
+
+    private void clearManagedNodes(User user) {
+        for (Node node : user.data().toCollection()) {
+            if (NodeType.META.matches(node)) {
+                MetaNode meta = NodeType.META.cast(node);
+                if (meta.getMetaKey().equalsIgnoreCase(META_KEY)) {
+                    user.data().remove(node);
+                }
+            }
+            if (NodeType.PREFIX.matches(node)) {
+                continue;
+            }
+            if (NodeType.SUFFIX.matches(node)) {
+                SuffixNode chatMeta = NodeType.SUFFIX.cast(node);
+                if (chatMeta.getPriority() == TAG_PRIORITY) {
+                    user.data().remove(node);
+                }
+            }
+        }
+    }
+
+    private LuckPerms getLuckPerms() {
+        try {
+            return LuckPermsProvider.get();
+        } catch (IllegalStateException ex) {
+            logger.atWarning().log("LuckPerms was not available while processing tags.");
+            return null;
+        }
+    }
+}
@@ -1,82 +1,105 @@
 package com.ninja.tags;
 
-import com.hypixel.hytale.server.core.Message;
-import com.hypixel.hytale.server.core.command.system.CommandSender;
-import com.hypixel.hytale.logger.HytaleLogger;
-import net.luckperms.api.LuckPerms;
-import net.luckperms.api.LuckPermsProvider;
-import net.luckperms.api.model.user.User;
-import net.luckperms.api.node.Node;
-import net.luckperms.api.node.NodeType;
-import net.luckperms.api.node.types.SuffixNode;
-import net.luckperms.api.node.types.MetaNode;
-
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Applies and clears managed tag suffixes through a {@link SuffixBackend}, LuckPerms unless configured otherwise.
+ */
 public class LuckPermsTagService {
-    private static final String META_KEY = "ninjatags_suffix";
-    private static final int TAG_PRIORITY = 100;
+    static final String NOT_LOADED_MESSAGE = "LuckPerms is not loaded; cannot change suffix.";
 
-    private final HytaleLogger logger;
+    private final SuffixBackend backend;
+    private final TagMetrics metrics;
+    private final long timeoutMillis;
+    // Writes not yet completed per player; a no-op check is only trusted when none are in flight.
+    private final Map<UUID, Integer> inFlight = new ConcurrentHashMap<>();
+    // Bumped as each write completes, so a no-op check that raced a completing write is not trusted.
+    private final AtomicLong completedWrites = new AtomicLong();
+    private final LongAdder skippedWrites = new LongAdder();
 
-    public LuckPermsTagService(HytaleLogger logger) {
-        this.logger = logger;
+    public LuckPermsTagService(SuffixBackend backend, TagMetrics metrics, long timeoutMillis) {
+        this.backend = backend;
+        this.metrics = metrics;
+        this.timeoutMillis = timeoutMillis;
     }
 
-    public boolean applyManagedSuffix(UUID playerId, String suffix, CommandSender feedbackTarget) {
-        LuckPerms luckPerms = getLuckPerms(feedbackTarget);
-        if (luckPerms == null) {
-            return false;
-        }
+    public CompletableFuture<Void> applyManagedSuffixAsync(UUID playerId, String suffix) {
+        return modifyManagedSuffix(playerId, suffix).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
 
-        luckPerms.getUserManager().modifyUser(playerId, user -> {
-            clearManagedNodes(user);
-            SuffixNode suffixNode = SuffixNode.builder(suffix, TAG_PRIORITY).build();
-            MetaNode marker = MetaNode.builder(META_KEY, suffix).build();
-            user.data().add(suffixNode);
-            user.data().add(marker);
-        }).join();
+    public CompletableFuture<Void> clearManagedSuffixAsync(UUID playerId) {
+        return modifyManagedSuffix(playerId, null).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
 
-        return true;
+    /**
+     * Looks up the managed suffix of every user carrying the marker meta node, including offline users.
+     */
+    public CompletableFuture<Map<UUID, String>> loadManagedSuffixes() {
+        return backend.loadManagedSuffixes();
     }
 
-    public boolean clearManagedSuffix(UUID playerId, CommandSender feedbackTarget) {
-        LuckPerms luckPerms = getLuckPerms(feedbackTarget);
-        if (luckPerms == null) {
-            return false;
-        }
+    /**
+     * Loads the player's LuckPerms data ahead of their first equip.
+     */
+    public CompletableFuture<Void> prefetch(UUID playerId) {
+        return backend.prefetch(playerId);
+    }
 
-        luckPerms.getUserManager().modifyUser(playerId, this::clearManagedNodes).join();
-        return true;
+    /**
+     * Writes skipped because the managed suffix already matched.
+     */
+    public long skippedWrites() {
+        return skippedWrites.sum();
     }
 
-    private void clearManagedNodes(User user) {
-        for (Node node : user.data().toCollection()) {
-            if (NodeType.META.matches(node)) {
-                MetaNode meta = NodeType.META.cast(node);
-                if (meta.getMetaKey().equalsIgnoreCase(META_KEY)) {
-                    user.data().remove(node);
-                }
-            }
-            if (NodeType.PREFIX.matches(node)) {
-                continue;
-            }
-            if (NodeType.SUFFIX.matches(node)) {
-                SuffixNode chatMeta = NodeType.SUFFIX.cast(node);
-                if (chatMeta.getPriority() == TAG_PRIORITY) {
-                    user.data().remove(node);
-                }
-            }
+    public void shutdown() {
+        backend.shutdown();
+    }
+
+    public static String describeFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            return "LuckPerms did not respond in time; your tag was not changed.";
         }
+        if (cause instanceof IllegalStateException && NOT_LOADED_MESSAGE.equals(cause.getMessage())) {
+            return NOT_LOADED_MESSAGE;
+        }
+        return "Failed to update your suffix; your tag was not changed.";
     }
 
-    private LuckPerms getLuckPerms(CommandSender feedbackTarget) {
-        try {
-            return LuckPermsProvider.get();
-        } catch (IllegalStateException ex) {
-            logger.atWarning().log("LuckPerms was not available while processing tags.");
-            feedbackTarget.sendMessage(Message.raw("LuckPerms is not loaded; cannot change suffix."));
-            return null;
+    private CompletableFuture<Void> modifyManagedSuffix(UUID playerId, String suffix) {
+        // The backend is asked before the compute, so LuckPerms lookups never run under a map bin lock.
+        long completedBefore = completedWrites.get();
+        boolean matches = !inFlight.containsKey(playerId) && backend.hasSuffix(playerId, suffix);
+        boolean[] unchanged = new boolean[1];
+        inFlight.compute(playerId, (id, writes) -> {
+            if (writes == null && matches && completedWrites.get() == completedBefore) {
+                unchanged[0] = true;
+                return null;
+            }
+            return writes == null ? 1 : writes + 1;
+        });
+        if (unchanged[0]) {
+            skippedWrites.increment();
+            return CompletableFuture.completedFuture(null);
         }
+
+        // Timed to the backend's own completion, so writes that outlive the caller's timeout still show their real cost.
+        TagOperationEvent timing = metrics.start(TagMetrics.Operation.LUCKPERMS_WRITE);
+        CompletableFuture<Void> write = backend.writeSuffix(playerId, suffix);
+        // Callers see the write complete only after it stops counting as in flight.
+        return write.whenComplete((ignored, error) -> {
+            metrics.stop(timing, playerId, null, error == null);
+            completedWrites.incrementAndGet();
+            inFlight.computeIfPresent(playerId, (id, writes) -> writes == 1 ? null : writes - 1);
+        });
     }
 }
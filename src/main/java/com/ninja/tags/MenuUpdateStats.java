@@ -0,0 +1,54 @@
+package com.ninja.tags;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts UI commands the tags menu sends, alongside what resending every row would have cost.
+ */
+final class MenuUpdateStats {
+    private final LongAdder builds = new LongAdder();
+    private final LongAdder buildCommands = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder skippedUpdates = new LongAdder();
+    private final LongAdder updateCommands = new LongAdder();
+    private final LongAdder fullUpdateCommands = new LongAdder();
+
+    void recordBuild(int commands) {
+        builds.increment();
+        buildCommands.add(commands);
+    }
+
+    void recordUpdate(int commands, int fullResendCommands) {
+        if (commands == 0) {
+            skippedUpdates.increment();
+        } else {
+            updates.increment();
+        }
+        updateCommands.add(commands);
+        fullUpdateCommands.add(fullResendCommands);
+    }
+
+    long builds() {
+        return builds.sum();
+    }
+
+    long buildCommands() {
+        return buildCommands.sum();
+    }
+
+    long updates() {
+        return updates.sum();
+    }
+
+    long skippedUpdates() {
+        return skippedUpdates.sum();
+    }
+
+    long updateCommands() {
+        return updateCommands.sum();
+    }
+
+    long fullUpdateCommands() {
+        return fullUpdateCommands.sum();
+    }
+}
@@ -0,0 +1,206 @@
+package com.ninja.tags;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+public class NinjaTagsConfig {
+    private String storage = "json";
+    private boolean journal = false;
+    private int journalCompactThreshold = 10000;
+    private boolean writeBehind = false;
+    private long flushIntervalMillis = 2000;
+    private int flushMaxPendingChanges = 512;
+    private boolean lazyLoading = false;
+    private int cacheMaxPlayers = 5000;
+    private long cacheIdleSeconds = 600;
+    private boolean sharedStore = false;
+    private String sharedStoreFile = "";
+    private long sharedPollMillis = 1000;
+    private String serverId = "";
+    private long luckPermsTimeoutMillis = 5000;
+    private String suffixBackend = "luckperms";
+    private long memorySuffixLatencyMillis = 0;
+    private long memorySuffixJitterMillis = 0;
+    private boolean reconcileOnStartup = true;
+    private int reconcileParallelism = 8;
+    private int reconcileBatchSize = 250;
+    private int bulkBatchSize = 500;
+    private int expiryBatchSize = 500;
+    private int importBatchSize = 10000;
+    private boolean auditLog = true;
+    private int auditMaxFileMegabytes = 16;
+    private int auditRetainFiles = 30;
+    private boolean watchTagsFile = false;
+    private long watchDebounceMillis = 500;
+
+    public StorageMode storageMode() {
+        if (storage == null) {
+            return StorageMode.JSON;
+        }
+        return switch (storage.toLowerCase(Locale.ROOT)) {
+            case "sqlite" -> StorageMode.SQLITE;
+            case "binary" -> StorageMode.BINARY;
+            default -> StorageMode.JSON;
+        };
+    }
+
+    public boolean journal() {
+        return journal;
+    }
+
+    public int journalCompactThreshold() {
+        return Math.max(1, journalCompactThreshold);
+    }
+
+    public boolean writeBehind() {
+        return writeBehind;
+    }
+
+    public long flushIntervalMillis() {
+        return Math.max(50, flushIntervalMillis);
+    }
+
+    public int flushMaxPendingChanges() {
+        return Math.max(1, flushMaxPendingChanges);
+    }
+
+    public boolean lazyLoading() {
+        return lazyLoading;
+    }
+
+    public int cacheMaxPlayers() {
+        return Math.max(1, cacheMaxPlayers);
+    }
+
+    public long cacheIdleSeconds() {
+        return Math.max(0, cacheIdleSeconds);
+    }
+
+    public boolean sharedStore() {
+        return sharedStore;
+    }
+
+    /**
+     * Blank means player-tags.db in the data folder; relative paths resolve against the data folder.
+     */
+    public String sharedStoreFile() {
+        return sharedStoreFile == null ? "" : sharedStoreFile.trim();
+    }
+
+    public long sharedPollMillis() {
+        return Math.max(100, sharedPollMillis);
+    }
+
+    /**
+     * Blank means a random id per start.
+     */
+    public String serverId() {
+        return serverId == null ? "" : serverId.trim();
+    }
+
+    public long luckPermsTimeoutMillis() {
+        return Math.max(100, luckPermsTimeoutMillis);
+    }
+
+    public SuffixBackendMode suffixBackendMode() {
+        if (suffixBackend != null && suffixBackend.toLowerCase(Locale.ROOT).equals("memory")) {
+            return SuffixBackendMode.MEMORY;
+        }
+        return SuffixBackendMode.LUCKPERMS;
+    }
+
+    public long memorySuffixLatencyMillis() {
+        return Math.max(0, memorySuffixLatencyMillis);
+    }
+
+    public long memorySuffixJitterMillis() {
+        return Math.max(0, memorySuffixJitterMillis);
+    }
+
+    public boolean reconcileOnStartup() {
+        return reconcileOnStartup;
+    }
+
+    public int reconcileParallelism() {
+        return Math.max(1, reconcileParallelism);
+    }
+
+    public int reconcileBatchSize() {
+        return Math.max(1, reconcileBatchSize);
+    }
+
+    public int bulkBatchSize() {
+        return Math.max(1, bulkBatchSize);
+    }
+
+    public int expiryBatchSize() {
+        return Math.max(1, expiryBatchSize);
+    }
+
+    public int importBatchSize() {
+        return Math.max(1, importBatchSize);
+    }
+
+    public boolean auditLog() {
+        return auditLog;
+    }
+
+    public long auditMaxFileBytes() {
+        return Math.max(1, auditMaxFileMegabytes) * 1024L * 1024L;
+    }
+
+    public int auditRetainFiles() {
+        return Math.max(1, auditRetainFiles);
+    }
+
+    public boolean watchTagsFile() {
+        return watchTagsFile;
+    }
+
+    public long watchDebounceMillis() {
+        return Math.max(50, watchDebounceMillis);
+    }
+
+    public static NinjaTagsConfig load(Path dataFolder, HytaleLogger logger) {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Path configFile = dataFolder.resolve("config.json");
+        try {
+            Files.createDirectories(dataFolder);
+            if (!Files.exists(configFile)) {
+                NinjaTagsConfig defaults = new NinjaTagsConfig();
+                try (Writer out = Files.newBufferedWriter(configFile)) {
+                    gson.toJson(defaults, out);
+                }
+                return defaults;
+            }
+
+            try (Reader in = Files.newBufferedReader(configFile)) {
+                NinjaTagsConfig loaded = gson.fromJson(in, NinjaTagsConfig.class);
+                return loaded == null ? new NinjaTagsConfig() : loaded;
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.atSevere().withCause(e).log("Failed to load %s. Using default settings.", configFile);
+            return new NinjaTagsConfig();
+        }
+    }
+
+    public enum StorageMode {
+        JSON,
+        SQLITE,
+        BINARY
+    }
+
+    public enum SuffixBackendMode {
+        LUCKPERMS,
+        MEMORY
+    }
+}
@@ -14,6 +14,8 @@ import com.hypixel.hytale.server.core.command.system.CommandContext;
 import com.hypixel.hytale.server.core.command.system.CommandSender;
 import com.hypixel.hytale.server.core.entity.entities.Player;
 import com.hypixel.hytale.server.core.entity.entities.player.pages.InteractiveCustomUIPage;
+import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
+import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
 import com.hypixel.hytale.server.core.ui.builder.EventData;
@@ -21,22 +23,45 @@ import com.hypixel.hytale.server.core.ui.builder.UICommandBuilder;
 import com.hypixel.hytale.server.core.ui.builder.UIEventBuilder;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.Universe;
+import com.hypixel.hytale.server.core.universe.world.World;
 import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class NinjaTagsPlugin extends JavaPlugin {
     private static final int MAX_VISIBLE_TAG_ROWS = 12;
-    private static final Pattern INLINE_HEX_PATTERN = Pattern.compile("&#([0-9a-fA-F]{6})");
+    private static final int TAG_SUGGESTION_LIMIT = 5;
+    private static final int TAG_LIST_LIMIT = 20;
+    private static final int HISTORY_DEFAULT_LIMIT = 10;
+    private static final int HISTORY_MAX_LIMIT = 50;
 
+    private NinjaTagsConfig config;
     private TagRepository tagRepository;
     private LuckPermsTagService luckPermsTagService;
+    private TagEquipper tagEquipper;
+    private TagCommandQueue tagCommands;
+    private SuffixReconciler suffixReconciler;
+    private EntitlementSource entitlementSource;
+    private BulkTagRunner bulkTagRunner;
+    private TagExpiries tagExpiries;
+    private PlayerTagTransfer playerTagTransfer;
+    private TagAuditLog auditLog;
+    private PlayerPrefetcher playerPrefetcher;
+    private TagFileWatcher tagFileWatcher;
+    private final MenuUpdateStats menuUpdateStats = new MenuUpdateStats();
+    private final TagMetrics metrics = new TagMetrics();
 
     public NinjaTagsPlugin(JavaPluginInit init) {
         super(init);
@@ -44,9 +69,41 @@ public class NinjaTagsPlugin extends JavaPlugin {
 
     @Override
     protected void setup() {
-        this.tagRepository = new TagRepository(getDataDirectory(), getLogger());
+        this.config = NinjaTagsConfig.load(getDataDirectory(), getLogger());
+        this.tagRepository = new TagRepository(getDataDirectory(), config, metrics, getLogger());
         this.tagRepository.load();
-        this.luckPermsTagService = new LuckPermsTagService(getLogger());
+        SuffixBackend suffixBackend = config.suffixBackendMode() == NinjaTagsConfig.SuffixBackendMode.MEMORY
+                ? new InMemorySuffixBackend(config.memorySuffixLatencyMillis(), config.memorySuffixJitterMillis())
+                : new LuckPermsSuffixBackend(getLogger());
+        if (suffixBackend instanceof InMemorySuffixBackend) {
+            getLogger().atWarning().log("Suffix backend is 'memory': tag suffixes are not written to LuckPerms and are lost on restart.");
+        }
+        this.luckPermsTagService = new LuckPermsTagService(suffixBackend, metrics, config.luckPermsTimeoutMillis());
+        if (config.suffixBackendMode() == NinjaTagsConfig.SuffixBackendMode.LUCKPERMS) {
+            this.entitlementSource = new LuckPermsEntitlementSource(getLogger());
+            this.tagRepository.setEntitlementSource(entitlementSource);
+        }
+        this.tagEquipper = new TagEquipper(tagRepository, luckPermsTagService, metrics, getLogger());
+        this.tagCommands = new TagCommandQueue(tagRepository, tagEquipper, getLogger());
+        this.suffixReconciler = new SuffixReconciler(tagRepository, luckPermsTagService, tagCommands,
+                config.reconcileParallelism(), config.reconcileBatchSize(), getLogger());
+        this.auditLog = new TagAuditLog(getDataDirectory().resolve("audit"), config.auditLog(), config.auditMaxFileBytes(),
+                config.auditRetainFiles(), getLogger());
+        this.tagExpiries = new TagExpiries(getDataDirectory().resolve("tag-expiries.json"), tagRepository, suffixReconciler,
+                tagCommands, auditLog, config.expiryBatchSize(), getLogger());
+        this.bulkTagRunner = new BulkTagRunner(tagRepository, suffixReconciler, tagExpiries, tagCommands, auditLog,
+                config.bulkBatchSize(), getLogger());
+        this.playerTagTransfer = new PlayerTagTransfer(tagRepository, tagCommands, suffixReconciler, tagExpiries, auditLog,
+                config.importBatchSize(), getLogger());
+
+        this.playerPrefetcher = new PlayerPrefetcher(tagRepository, luckPermsTagService, metrics, getLogger());
+
+        getEventRegistry().register(PlayerConnectEvent.class, event -> {
+            UUID playerId = event.getPlayerRef().getUuid();
+            tagRepository.playerConnected(playerId);
+            playerPrefetcher.prefetch(playerId);
+        });
+        getEventRegistry().register(PlayerDisconnectEvent.class, event -> tagRepository.playerDisconnected(event.getPlayerRef().getUuid()));
 
         getCommandRegistry().registerCommand(new TagsCommand());
         getCommandRegistry().registerCommand(new TagsAdminCommand());
@@ -60,9 +117,47 @@ public class NinjaTagsPlugin extends JavaPlugin {
         getLogger().atInfo().log("NinjaTags known CustomUI docs: [ninjatags/TagsMenu.ui]");
     }
 
+    @Override
+    protected void start() {
+        if (entitlementSource != null && !entitlementSource.subscribe(this::onPermissionsChanged)) {
+            getLogger().atWarning().log("LuckPerms is not loaded; entitlement rules in tags.json are inactive.");
+        }
+        if (config.reconcileOnStartup()) {
+            suffixReconciler.reconcileAsync(message -> getLogger().atInfo().log("%s", message));
+        }
+        auditLog.start();
+        tagExpiries.start();
+        if (config.watchTagsFile()) {
+            tagFileWatcher = new TagFileWatcher(tagRepository.getTagDefinitionsFile(), config.watchDebounceMillis(),
+                    () -> applyTagReload(tagRepository.reloadTagDefinitions(), message -> getLogger().atInfo().log("%s", message)),
+                    getLogger());
+            try {
+                tagFileWatcher.start();
+            } catch (IOException e) {
+                getLogger().atSevere().withCause(e).log("Failed to watch %s; use /tagsadmin reload instead.", tagRepository.getTagDefinitionsFile());
+                tagFileWatcher.stop();
+                tagFileWatcher = null;
+            }
+        }
+    }
+
     @Override
     protected void shutdown() {
-        this.tagRepository.save();
+        if (this.tagFileWatcher != null) {
+            this.tagFileWatcher.stop();
+        }
+        this.bulkTagRunner.shutdown();
+        this.tagExpiries.shutdown();
+        this.playerTagTransfer.shutdown();
+        this.tagCommands.shutdown();
+        this.auditLog.shutdown();
+        this.playerPrefetcher.shutdown();
+        this.suffixReconciler.shutdown();
+        if (this.entitlementSource != null) {
+            this.entitlementSource.shutdown();
+        }
+        this.luckPermsTagService.shutdown();
+        this.tagRepository.shutdown();
     }
 
     private class TagsCommand extends AbstractCommand {
@@ -85,7 +180,7 @@ public class NinjaTagsPlugin extends JavaPlugin {
             }
 
             Player player = ctx.senderAs(Player.class);
-            getLogger().atInfo().log("/tags invoked by sender=%s", ctx.sender());
+            getLogger().atFine().log("/tags invoked by sender=%s", ctx.sender());
             if (player == null || player.getWorld() == null) {
                 ctx.sendMessage(Message.raw("Could not open tags UI: player world not available."));
                 return CompletableFuture.completedFuture(null);
@@ -110,25 +205,122 @@ public class NinjaTagsPlugin extends JavaPlugin {
                 return CompletableFuture.completedFuture(null);
             }
 
-            List<String> args = parseInput(ctx.getInputString());
+            List<String> args = CommandInput.split(ctx.getInputString());
             if (args.size() < 2) {
-                ctx.sendMessage(Message.raw("Usage: /tagsadmin <givetag|removetag|reload> [player] [tagid]"));
+                ctx.sendMessage(Message.raw("Usage: /tagsadmin <givetag|removetag|bulkgive|bulkremove|reload|reconcile|stats|tags|import|export|history> [player] [tagid] [duration]"));
                 return CompletableFuture.completedFuture(null);
             }
 
             String sub = args.get(1).toLowerCase(Locale.ROOT);
             if (sub.equals("reload")) {
-                int count = tagRepository.reloadTags();
-                if (count >= 0) {
-                    ctx.sendMessage(Message.raw("Reloaded tags.json (" + count + " tags loaded)."));
+                TagReload reload = tagRepository.reloadTagDefinitions();
+                if (reload != null) {
+                    CommandSender sender = ctx.sender();
+                    applyTagReload(reload, message -> {
+                        getLogger().atInfo().log("%s", message);
+                        sender.sendMessage(Message.raw(message));
+                    });
                 } else {
                     ctx.sendMessage(Message.raw("Failed to reload tags.json. Check server logs for details."));
                 }
                 return CompletableFuture.completedFuture(null);
             }
 
+            if (sub.equals("reconcile")) {
+                startReconcile(ctx.sender());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (sub.equals("stats")) {
+                PersistenceStats stats = tagRepository.getPersistenceStats();
+                ctx.sendMessage(Message.raw(String.format(Locale.ROOT,
+                        "Persistence (%s): pending=%d flushes=%d flushedChanges=%d lastBatch=%d",
+                        stats.writeBehind() ? "write-behind" : "synchronous",
+                        stats.pendingChanges(), stats.flushCount(), stats.flushedChanges(), stats.lastBatchSize())));
+                ctx.sendMessage(Message.raw(String.format(Locale.ROOT,
+                        "Flush latency: last=%.2fms avg=%.2fms max=%.2fms",
+                        stats.lastFlushMillis(), stats.averageFlushMillis(), stats.maxFlushMillis())));
+                CacheStats cache = tagRepository.getCacheStats();
+                ctx.sendMessage(Message.raw(String.format(Locale.ROOT,
+                        "Player cache (%s): cached=%d hits=%d misses=%d evictions=%d",
+                        cache.lazyLoading() ? "lazy" : "eager",
+                        cache.cachedPlayers(), cache.hits(), cache.misses(), cache.evictions())));
+                EntitlementStats entitlements = tagRepository.getEntitlementStats();
+                if (entitlements.enabled()) {
+                    ctx.sendMessage(Message.raw(String.format(Locale.ROOT,
+                            "Entitlements: cached=%d hits=%d evaluations=%d invalidations=%d",
+                            entitlements.cachedPlayers(), entitlements.hits(), entitlements.evaluations(), entitlements.invalidations())));
+                }
+                ctx.sendMessage(Message.raw(String.format(Locale.ROOT, "LuckPerms writes skipped as unchanged: %d",
+                        luckPermsTagService.skippedWrites())));
+                CommandQueueStats queue = tagCommands.getStats();
+                ctx.sendMessage(Message.raw(String.format(Locale.ROOT, "Tag changes: submitted=%d coalesced=%d",
+                        queue.submitted(), queue.coalesced())));
+                AuditStats audit = auditLog.getStats();
+                if (audit.enabled()) {
+                    ctx.sendMessage(Message.raw(String.format(Locale.ROOT, "Audit log: recorded=%d written=%d pending=%d dropped=%d segment=%d",
+                            audit.recorded(), audit.written(), audit.pending(), audit.dropped(), audit.segment())));
+                }
+                ExpiryStats expiries = tagExpiries.getStats();
+                ctx.sendMessage(Message.raw(String.format(Locale.ROOT, "Timed tags: pending=%d expired=%d next=%s",
+                        expiries.pending(), expiries.expired(),
+                        expiries.nextExpiryMillis() < 0 ? "none" : Instant.ofEpochMilli(expiries.nextExpiryMillis()).toString())));
+                SharedStoreStats shared = tagRepository.getSharedStoreStats();
+                if (shared.enabled()) {
+                    ctx.sendMessage(Message.raw(String.format(Locale.ROOT,
+                            "Shared store (server %s): seq=%d polls=%d remoteChanges=%d refreshed=%d gaps=%d deferred=%d",
+                            shared.serverId(), shared.lastSequence(), shared.polls(), shared.remoteChanges(),
+                            shared.refreshedPlayers(), shared.feedGaps(), shared.deferredPlayers())));
+                }
+                ctx.sendMessage(Message.raw(String.format(Locale.ROOT,
+                        "Tags menu: builds=%d (%d commands) updates=%d skipped=%d commands=%d of %d for full resends",
+                        menuUpdateStats.builds(), menuUpdateStats.buildCommands(), menuUpdateStats.updates(),
+                        menuUpdateStats.skippedUpdates(), menuUpdateStats.updateCommands(), menuUpdateStats.fullUpdateCommands())));
+                double uptime = metrics.uptimeSeconds();
+                for (TagMetrics.Operation operation : TagMetrics.Operation.values()) {
+                    LatencyHistogram.Snapshot latency = metrics.snapshot(operation);
+                    if (latency.count() == 0) {
+                        continue;
+                    }
+                    ctx.sendMessage(Message.raw(String.format(Locale.ROOT,
+                            "%s: count=%d failed=%d rate=%.3f/s avg=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                            operation.label(), latency.count(), metrics.failures(operation), latency.count() / uptime,
+                            latency.averageNanos() / 1_000_000.0, latency.p50Nanos() / 1_000_000.0,
+                            latency.p95Nanos() / 1_000_000.0, latency.p99Nanos() / 1_000_000.0, latency.maxNanos() / 1_000_000.0)));
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (sub.equals("tags")) {
+                String query = args.size() > 2 ? String.join(" ", args.subList(2, args.size())) : "";
+                List<TagDefinition> matches = query.isEmpty()
+                        ? tagRepository.getAllTags().stream().limit(TAG_LIST_LIMIT).toList()
+                        : tagRepository.searchTags(query, TAG_LIST_LIMIT);
+                if (matches.isEmpty()) {
+                    ctx.sendMessage(Message.raw("No tags match: " + query));
+                } else {
+                    ctx.sendMessage(Message.raw("Tags (" + matches.size() + " of " + tagRepository.getTagCount() + "): "
+                            + String.join(", ", matches.stream().map(TagDefinition::id).toList())));
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (sub.equals("export") || sub.equals("import")) {
+                startTransfer(ctx.sender(), sub, args);
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (sub.equals("history")) {
+                return showHistory(ctx, args);
+            }
+
+            if (sub.equals("bulkgive") || sub.equals("bulkremove")) {
+                startBulk(ctx.sender(), sub.equals("bulkgive") ? BulkTagRunner.Action.GRANT : BulkTagRunner.Action.REVOKE, args);
+                return CompletableFuture.completedFuture(null);
+            }
+
             if (args.size() < 4) {
-                ctx.sendMessage(Message.raw("Usage: /tagsadmin <givetag|removetag> <player> <tagid>"));
+                ctx.sendMessage(Message.raw("Usage: /tagsadmin <givetag|removetag> <player> <tagid> [duration, e.g. 7d or 12h]"));
                 return CompletableFuture.completedFuture(null);
             }
 
@@ -142,29 +334,250 @@ public class NinjaTagsPlugin extends JavaPlugin {
             }
 
             if (tagRepository.getTag(tagId) == null) {
-                ctx.sendMessage(Message.raw("Unknown tag id: " + tagId));
+                List<TagDefinition> suggestions = tagRepository.searchTags(tagId, TAG_SUGGESTION_LIMIT);
+                ctx.sendMessage(Message.raw("Unknown tag id: " + tagId + (suggestions.isEmpty() ? "" : ". Did you mean: "
+                        + String.join(", ", suggestions.stream().map(TagDefinition::id).toList()) + "?")));
                 return CompletableFuture.completedFuture(null);
             }
 
             if (sub.equals("givetag")) {
-                tagRepository.grantTag(target.getUuid(), tagId);
-                ctx.sendMessage(Message.raw("Granted tag " + tagId + " to " + target.getUsername()));
-                target.sendMessage(Message.raw("You received tag: " + tagId));
-            } else if (sub.equals("removetag")) {
-                tagRepository.revokeTag(target.getUuid(), tagId);
-                if (tagId.equals(tagRepository.getEquippedTag(target.getUuid()))) {
-                    tagRepository.setEquippedTag(target.getUuid(), null);
-                    luckPermsTagService.clearManagedSuffix(target.getUuid(), ctx.sender());
+                Duration duration = args.size() > 4 ? CommandInput.parseDuration(args.get(4)) : null;
+                if (args.size() > 4 && duration == null) {
+                    ctx.sendMessage(Message.raw("Invalid duration: " + args.get(4) + ". Use e.g. 7d, 12h, 30m or 1d12h, up to " + CommandInput.MAX_DURATION.toDays() + "d."));
+                    return CompletableFuture.completedFuture(null);
                 }
-                ctx.sendMessage(Message.raw("Removed tag " + tagId + " from " + target.getUsername()));
-                target.sendMessage(Message.raw("An admin removed tag: " + tagId));
-            } else {
-                ctx.sendMessage(Message.raw("Unknown subcommand. Use givetag or removetag."));
+                String actor = ctx.sender().getDisplayName();
+                if (duration == null) {
+                    boolean wasTimed = tagExpiries.cancel(target.getUuid(), tagId);
+                    return reportChange(ctx, tagCommands.grant(target.getUuid(), tagId, Runnable::run), () -> {
+                        auditLog.record(actor, "grant", target.getUuid(), target.getUsername(), tagId, null);
+                        ctx.sendMessage(Message.raw("Granted tag " + tagId + " to " + target.getUsername()));
+                        target.sendMessage(Message.raw("You received tag: " + tagId));
+                    }, () -> {
+                        if (!wasTimed) {
+                            ctx.sendMessage(Message.raw(target.getUsername() + " already owns " + tagId + "."));
+                            return;
+                        }
+                        auditLog.record(actor, "extend", target.getUuid(), target.getUsername(), tagId, "permanent");
+                        ctx.sendMessage(Message.raw("Made tag " + tagId + " permanent for " + target.getUsername()));
+                        target.sendMessage(Message.raw("Your tag " + tagId + " no longer expires"));
+                    });
+                }
+                if (tagRepository.getOwnedTags(target.getUuid()).contains(tagId) && tagExpiries.expiresAt(target.getUuid(), tagId) == null) {
+                    ctx.sendMessage(Message.raw(target.getUsername() + " already owns " + tagId + " permanently."));
+                    return CompletableFuture.completedFuture(null);
+                }
+                Instant expiresAt = Instant.now().plus(duration);
+                try {
+                    tagExpiries.schedule(target.getUuid(), tagId, expiresAt.toEpochMilli());
+                } catch (IOException e) {
+                    getLogger().atSevere().withCause(e).log("Failed to save expiry of %s for %s", tagId, target.getUuid());
+                    ctx.sendMessage(Message.raw("Failed to save the expiry; tag not granted. Check server logs for details."));
+                    return CompletableFuture.completedFuture(null);
+                }
+                return reportChange(ctx, tagCommands.grant(target.getUuid(), tagId, Runnable::run), () -> {
+                    auditLog.record(actor, "grant", target.getUuid(), target.getUsername(), tagId, "until " + expiresAt);
+                    ctx.sendMessage(Message.raw("Granted tag " + tagId + " to " + target.getUsername() + " until " + expiresAt));
+                    target.sendMessage(Message.raw("You received tag: " + tagId + " (expires " + expiresAt + ")"));
+                }, () -> {
+                    // Already owned with a deadline, which the schedule above moved.
+                    auditLog.record(actor, "extend", target.getUuid(), target.getUsername(), tagId, "until " + expiresAt);
+                    ctx.sendMessage(Message.raw("Tag " + tagId + " of " + target.getUsername() + " now expires " + expiresAt));
+                    target.sendMessage(Message.raw("Your tag " + tagId + " now expires " + expiresAt));
+                });
+            }
+            if (sub.equals("removetag")) {
+                tagExpiries.cancel(target.getUuid(), tagId);
+                return reportChange(ctx, tagCommands.revoke(target.getUuid(), tagId, Runnable::run), () -> {
+                    auditLog.record(ctx.sender().getDisplayName(), "revoke", target.getUuid(), target.getUsername(), tagId, null);
+                    ctx.sendMessage(Message.raw("Removed tag " + tagId + " from " + target.getUsername()));
+                    target.sendMessage(Message.raw("An admin removed tag: " + tagId));
+                }, () -> ctx.sendMessage(Message.raw(target.getUsername() + " does not own " + tagId + ".")));
             }
 
-            tagRepository.save();
+            ctx.sendMessage(Message.raw("Unknown subcommand. Use givetag or removetag."));
             return CompletableFuture.completedFuture(null);
         }
+
+        private CompletableFuture<Void> showHistory(CommandContext ctx, List<String> args) {
+            if (args.size() < 3) {
+                ctx.sendMessage(Message.raw("Usage: /tagsadmin history <player|uuid> [count]"));
+                return CompletableFuture.completedFuture(null);
+            }
+            String name = args.get(2);
+            UUID playerId;
+            PlayerRef online = Universe.get().getPlayerByUsername(name, NameMatching.EXACT_IGNORE_CASE);
+            if (online != null) {
+                playerId = online.getUuid();
+            } else {
+                try {
+                    playerId = UUID.fromString(name);
+                } catch (IllegalArgumentException e) {
+                    ctx.sendMessage(Message.raw("Player must be online or given by UUID: " + name));
+                    return CompletableFuture.completedFuture(null);
+                }
+            }
+            int limit = HISTORY_DEFAULT_LIMIT;
+            if (args.size() > 3) {
+                try {
+                    limit = Math.clamp(Integer.parseInt(args.get(3)), 1, HISTORY_MAX_LIMIT);
+                } catch (NumberFormatException e) {
+                    ctx.sendMessage(Message.raw("Invalid count: " + args.get(3)));
+                    return CompletableFuture.completedFuture(null);
+                }
+            }
+
+            return auditLog.history(playerId, limit).handle((entries, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    getLogger().atWarning().withCause(cause).log("Failed to read audit history of %s", name);
+                    ctx.sendMessage(Message.raw("Could not read history: " + cause.getMessage()));
+                    return null;
+                }
+                if (entries.isEmpty()) {
+                    ctx.sendMessage(Message.raw("No recorded tag changes for " + name + "."));
+                    return null;
+                }
+                ctx.sendMessage(Message.raw("Tag changes for " + name + ", newest first:"));
+                for (AuditEntry entry : entries) {
+                    ctx.sendMessage(Message.raw(Instant.ofEpochMilli(entry.time()).truncatedTo(ChronoUnit.SECONDS) + " "
+                            + entry.action() + " " + entry.tag() + " by " + entry.actor()
+                            + (entry.detail() == null ? "" : " (" + entry.detail() + ")")));
+                }
+                return null;
+            });
+        }
+
+        /**
+         * Runs {@code onChanged} once the writer has applied the change, or {@code onUnchanged} if it was a no-op;
+         * messages go out from the writer thread.
+         */
+        private CompletableFuture<Void> reportChange(CommandContext ctx, CompletableFuture<Boolean> change, Runnable onChanged, Runnable onUnchanged) {
+            return change.handle((changed, error) -> {
+                if (error != null) {
+                    ctx.sendMessage(Message.raw("Failed to apply the tag change. Check server logs for details."));
+                } else if (changed) {
+                    onChanged.run();
+                } else {
+                    onUnchanged.run();
+                }
+                return null;
+            });
+        }
+    }
+
+    private void onPermissionsChanged(UUID playerId) {
+        tagRepository.invalidateEntitlements(playerId);
+        tagCommands.call(() -> {
+            tagCommands.dropUnavailable(playerId);
+            return null;
+        });
+    }
+
+    /**
+     * Reports a tags.json reload and refreshes the suffixes of players wearing tags whose suffix changed.
+     */
+    private void applyTagReload(TagReload reload, Consumer<String> progress) {
+        if (reload == null) {
+            return;
+        }
+        progress.accept("Reloaded tags.json (" + reload.summary() + ").");
+        suffixReconciler.refreshEquippedAsync(reload.staleSuffixTags(), progress);
+    }
+
+    private void startBulk(CommandSender sender, BulkTagRunner.Action action, List<String> args) {
+        String usage = "Usage: /tagsadmin " + args.get(1) + " <tagid> <online|owners <tagid>|file <name>>";
+        if (args.size() < 4) {
+            sender.sendMessage(Message.raw(usage));
+            return;
+        }
+
+        String tagId = args.get(2);
+        if (action == BulkTagRunner.Action.GRANT && tagRepository.getTag(tagId) == null) {
+            sender.sendMessage(Message.raw("Unknown tag id: " + tagId));
+            return;
+        }
+
+        Consumer<String> progress = message -> {
+            getLogger().atInfo().log("%s", message);
+            sender.sendMessage(Message.raw(message));
+        };
+        String target = args.get(3).toLowerCase(Locale.ROOT);
+        String argument = args.size() > 4 ? args.get(4) : null;
+        Callable<List<UUID>> players;
+        String description;
+        if (target.equals("online")) {
+            // Snapshot the online players on the calling thread.
+            List<UUID> online = Universe.get().getPlayers().stream().map(PlayerRef::getUuid).toList();
+            players = () -> online;
+            description = "online players";
+        } else if (target.equals("owners") && argument != null) {
+            players = () -> tagRepository.getTagOwners(argument);
+            description = "owners of " + argument;
+        } else if (target.equals("file") && argument != null) {
+            Path dataFolder = getDataDirectory().toAbsolutePath().normalize();
+            Path file = dataFolder.resolve(argument).normalize();
+            if (!file.startsWith(dataFolder) || !Files.isRegularFile(file)) {
+                sender.sendMessage(Message.raw("Player list must be a file in the plugin data folder: " + argument));
+                return;
+            }
+            players = () -> BulkTagRunner.readPlayerIds(file, progress);
+            description = "players listed in " + file.getFileName();
+        } else {
+            sender.sendMessage(Message.raw(usage));
+            return;
+        }
+
+        if (!bulkTagRunner.runAsync(sender.getDisplayName(), action, tagId, description, players, progress)) {
+            sender.sendMessage(Message.raw("A bulk tag change is already running."));
+        }
+    }
+
+    private void startTransfer(CommandSender sender, String sub, List<String> args) {
+        Consumer<String> progress = message -> {
+            getLogger().atInfo().log("%s", message);
+            sender.sendMessage(Message.raw(message));
+        };
+        boolean started;
+        if (sub.equals("export")) {
+            PlayerTagTransfer.Format format = args.size() > 2 ? PlayerTagTransfer.Format.parse(args.get(2)) : PlayerTagTransfer.Format.JSON;
+            if (format == null) {
+                sender.sendMessage(Message.raw("Usage: /tagsadmin export [json|csv]"));
+                return;
+            }
+            Path target = getDataDirectory().resolve("player-tags.export." + format.extension());
+            started = playerTagTransfer.exportAsync(target, format, progress);
+        } else {
+            if (args.size() < 3) {
+                sender.sendMessage(Message.raw("Usage: /tagsadmin import <file> [json|csv]"));
+                return;
+            }
+            Path dataFolder = getDataDirectory().toAbsolutePath().normalize();
+            Path file = dataFolder.resolve(args.get(2)).normalize();
+            if (!file.startsWith(dataFolder) || !Files.isRegularFile(file)) {
+                sender.sendMessage(Message.raw("Import must be a file in the plugin data folder: " + args.get(2)));
+                return;
+            }
+            PlayerTagTransfer.Format format = args.size() > 3 ? PlayerTagTransfer.Format.parse(args.get(3)) : PlayerTagTransfer.Format.of(file);
+            if (format == null) {
+                sender.sendMessage(Message.raw("Cannot tell the format of " + file.getFileName() + "; add json or csv."));
+                return;
+            }
+            started = playerTagTransfer.importAsync(sender.getDisplayName(), file, format, progress);
+        }
+        if (!started) {
+            sender.sendMessage(Message.raw("An import or export is already running."));
+        }
+    }
+
+    private void startReconcile(CommandSender sender) {
+        boolean started = suffixReconciler.reconcileAsync(message -> {
+            getLogger().atInfo().log("%s", message);
+            sender.sendMessage(Message.raw(message));
+        });
+        if (!started) {
+            sender.sendMessage(Message.raw("A suffix reconciliation is already running."));
+        }
     }
 
     @SuppressWarnings("removal")
@@ -187,57 +600,34 @@ public class NinjaTagsPlugin extends JavaPlugin {
             return;
         }
 
-        getLogger().atInfo().log("Opening TagsMenuPage for %s (%s)", playerRef.getUsername(), playerRef.getUuid());
+        getLogger().atFine().log("Opening TagsMenuPage for %s (%s)", playerRef.getUsername(), playerRef.getUuid());
         player.getPageManager().openCustomPage(ref, store, new TagsMenuPage(playerRef));
     }
 
-    private boolean equipTag(UUID playerId, String tagId, CommandSender feedbackTarget) {
-        if (!tagRepository.playerHasTag(playerId, tagId)) {
-            feedbackTarget.sendMessage(Message.raw("You do not own tag id: " + tagId));
-            return false;
-        }
-
-        TagDefinition tag = tagRepository.getTag(tagId);
-        if (tag == null) {
-            feedbackTarget.sendMessage(Message.raw("Unknown tag id: " + tagId));
-            return false;
-        }
-
-        boolean ok = luckPermsTagService.applyManagedSuffix(playerId, tag.formattedSuffix(), feedbackTarget);
-        if (!ok) {
-            return false;
-        }
-
-        tagRepository.setEquippedTag(playerId, tagId);
-        tagRepository.save();
-        feedbackTarget.sendMessage(
-                Message.join(
-                        Message.raw("Equipped tag: "),
-                        parseTagText(tag)
-                )
-        );
-        return true;
-    }
-
-    private boolean deEquip(UUID playerId, CommandSender feedbackTarget) {
-        if (tagRepository.getEquippedTag(playerId) == null) {
-            feedbackTarget.sendMessage(Message.raw("You do not have a tag equipped."));
-            return false;
-        }
-
-        luckPermsTagService.clearManagedSuffix(playerId, feedbackTarget);
-        tagRepository.setEquippedTag(playerId, null);
-        tagRepository.save();
-        feedbackTarget.sendMessage(Message.raw("Tag de-equipped."));
-        return true;
-    }
-
     private class TagsMenuPage extends InteractiveCustomUIPage<TagsMenuPage.Data> {
         private static final BuilderCodec<Data> DATA_CODEC = BuilderCodec.builder(Data.class, Data::new)
-                .append(new KeyedCodec<>("TagId", Codec.STRING), (data, value) -> data.tagId = value, data -> data.tagId)
+                .append(new KeyedCodec<>("Row", Codec.STRING), (data, value) -> data.row = value, data -> data.row)
+                .add()
+                .append(new KeyedCodec<>("Page", Codec.STRING), (data, value) -> data.page = value, data -> data.page)
+                .add()
+                .append(new KeyedCodec<>("@Filter", Codec.STRING), (data, value) -> data.filter = value, data -> data.filter)
                 .add()
                 .build();
 
+        // What the client currently shows, so live updates only send the properties that changed.
+        private final int[] sentOrdinals = new int[MAX_VISIBLE_TAG_ROWS];
+        private final TagText[] sentTexts = new TagText[MAX_VISIBLE_TAG_ROWS];
+        private final boolean[] sentEquipped = new boolean[MAX_VISIBLE_TAG_ROWS];
+        private boolean sentEmpty;
+        private String sentEmptyText;
+        private boolean sentPrevious;
+        private boolean sentNext;
+        private String sentPageLabel;
+        private int page;
+        private String filter = "";
+        private TagSet filterMatches;
+        private TagSet filterDefinedTags;
+
         private TagsMenuPage(PlayerRef playerRef) {
             super(playerRef, CustomPageLifetime.CanDismissOrCloseThroughInteraction, DATA_CODEC);
         }
@@ -245,79 +635,142 @@ public class NinjaTagsPlugin extends JavaPlugin {
         @Override
         public void build(Ref<EntityStore> ref, UICommandBuilder uiCommandBuilder, UIEventBuilder uiEventBuilder, Store<EntityStore> store) {
             UUID playerId = playerRef.getUuid();
-            String equippedId = tagRepository.getEquippedTag(playerId);
-            List<String> ownedTags = tagRepository.getOwnedTags(playerId);
-
-            getLogger().atInfo().log("Building TagsMenuPage for %s (%s). ownedTags=%s equipped=%s", playerRef.getUsername(), playerId, ownedTags.size(), equippedId);
-            getLogger().atInfo().log("Appending CustomUI document: ninjatags/TagsMenu.ui");
+            TagOperationEvent timing = metrics.start(TagMetrics.Operation.PAGE_BUILD);
+            getLogger().atFine().log("Building TagsMenuPage for %s (%s)", playerRef.getUsername(), playerId);
             uiCommandBuilder.append("ninjatags/TagsMenu.ui");
             uiCommandBuilder.set("#Title.TextSpans", Message.raw("Ninja Tags"));
 
-            for (int i = 0; i < MAX_VISIBLE_TAG_ROWS; i++) {
-                String labelPath = "#TagLabel" + i;
-                String buttonPath = "#TagButton" + i;
-                uiCommandBuilder.set(labelPath + ".Visible", false);
-                uiCommandBuilder.set(buttonPath + ".Visible", false);
-            }
-
-            for (int i = 0; i < ownedTags.size() && i < MAX_VISIBLE_TAG_ROWS; i++) {
-                String tagId = ownedTags.get(i);
-                TagDefinition tag = tagRepository.getTag(tagId);
-                if (tag == null) {
-                    continue;
-                }
-
-                boolean equipped = tagId.equals(equippedId);
-                String labelPath = "#TagLabel" + i;
-                String buttonPath = "#TagButton" + i;
-                String buttonText = equipped ? "De-equip" : "Equip";
-
-                uiCommandBuilder.set(labelPath + ".Visible", true);
-                uiCommandBuilder.set(buttonPath + ".Visible", true);
-                uiCommandBuilder.set(labelPath + ".TextSpans", parseTagText(tag));
-                uiCommandBuilder.set(buttonPath + ".TextSpans", Message.raw(buttonText));
+            int commands = 2 + writeState(uiCommandBuilder, playerId, true);
+            menuUpdateStats.recordBuild(commands);
+            metrics.stop(timing, playerId, null, true);
 
+            // Bound by row rather than tag id, so the bindings stay valid when the visible slice changes.
+            for (int row = 0; row < MAX_VISIBLE_TAG_ROWS; row++) {
                 uiEventBuilder.addEventBinding(
                         CustomUIEventBindingType.Activating,
-                        buttonPath,
-                        EventData.of("TagId", tagId),
+                        "#TagButton" + row,
+                        EventData.of("Row", Integer.toString(row)),
                         false
                 );
             }
-
-            uiCommandBuilder.set("#EmptyLabel.Visible", ownedTags.isEmpty());
+            uiEventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#PreviousButton", EventData.of("Page", "Previous"), false);
+            uiEventBuilder.addEventBinding(CustomUIEventBindingType.Activating, "#NextButton", EventData.of("Page", "Next"), false);
+            uiEventBuilder.addEventBinding(CustomUIEventBindingType.ValueChanged, "#FilterInput", EventData.of("@Filter", "#FilterInput.Value"), false);
         }
 
         private void pushLiveUiState(UUID playerId) {
+            TagOperationEvent timing = metrics.start(TagMetrics.Operation.PAGE_UPDATE);
             UICommandBuilder builder = new UICommandBuilder();
-            String equippedId = tagRepository.getEquippedTag(playerId);
-            List<String> ownedTags = tagRepository.getOwnedTags(playerId);
-
-            for (int i = 0; i < MAX_VISIBLE_TAG_ROWS; i++) {
-                String labelPath = "#TagLabel" + i;
-                String buttonPath = "#TagButton" + i;
-                builder.set(labelPath + ".Visible", false);
-                builder.set(buttonPath + ".Visible", false);
+            int commands = writeState(builder, playerId, false);
+            // A full resend hides all rows, re-shows and re-labels the visible ones, and resets the empty label and pager.
+            int visibleRows = 0;
+            for (int ordinal : sentOrdinals) {
+                visibleRows += ordinal >= 0 ? 1 : 0;
             }
+            menuUpdateStats.recordUpdate(commands, MAX_VISIBLE_TAG_ROWS * 2 + visibleRows * 4 + 4);
+            if (commands > 0) {
+                update(false, builder);
+            }
+            metrics.stop(timing, playerId, null, true);
+        }
 
-            for (int i = 0; i < ownedTags.size() && i < MAX_VISIBLE_TAG_ROWS; i++) {
-                String tagId = ownedTags.get(i);
-                TagDefinition tag = tagRepository.getTag(tagId);
-                if (tag == null) {
+        /**
+         * Writes the current page into {@code builder}. Unless {@code full} is set, only properties that differ
+         * from what was last sent are written. Returns the number of commands written.
+         */
+        private int writeState(UICommandBuilder builder, UUID playerId, boolean full) {
+            int equippedOrdinal = tagRepository.getEquippedOrdinal(playerId);
+            TagSet availableTags = tagRepository.getAvailableTagSet(playerId);
+            TagSet definedTags = visibleTags();
+            int total = availableTags.intersectionSize(definedTags);
+            int pageCount = Math.max(1, (total + MAX_VISIBLE_TAG_ROWS - 1) / MAX_VISIBLE_TAG_ROWS);
+            page = Math.clamp(page, 0, pageCount - 1);
+            int commands = 0;
+
+            int ordinal = availableTags.nthOrdinal(page * MAX_VISIBLE_TAG_ROWS, definedTags);
+            for (int row = 0; row < MAX_VISIBLE_TAG_ROWS; row++) {
+                String labelPath = "#TagLabel" + row;
+                String buttonPath = "#TagButton" + row;
+                boolean visible = ordinal >= 0;
+                boolean wasVisible = !full && sentOrdinals[row] >= 0;
+
+                if (full || visible != wasVisible) {
+                    builder.set(labelPath + ".Visible", visible);
+                    builder.set(buttonPath + ".Visible", visible);
+                    commands += 2;
+                }
+                sentOrdinals[row] = ordinal;
+                if (!visible) {
                     continue;
                 }
 
-                boolean equipped = tagId.equals(equippedId);
-                String labelPath = "#TagLabel" + i;
-                String buttonPath = "#TagButton" + i;
-                builder.set(labelPath + ".Visible", true);
-                builder.set(buttonPath + ".Visible", true);
-                builder.set(labelPath + ".TextSpans", parseTagText(tag));
-                builder.set(buttonPath + ".TextSpans", Message.raw(equipped ? "De-equip" : "Equip"));
+                TagText text = tagRepository.getTagText(ordinal);
+                if (full || text != sentTexts[row]) {
+                    builder.set(labelPath + ".TextSpans", text.toMessage());
+                    sentTexts[row] = text;
+                    commands++;
+                }
+                boolean equipped = ordinal == equippedOrdinal;
+                if (!wasVisible || equipped != sentEquipped[row]) {
+                    builder.set(buttonPath + ".TextSpans", Message.raw(buttonText(equipped)));
+                    sentEquipped[row] = equipped;
+                    commands++;
+                }
+                ordinal = availableTags.nextOrdinal(ordinal + 1, definedTags);
+            }
+
+            boolean empty = total == 0;
+            if (full || empty != sentEmpty) {
+                builder.set("#EmptyLabel.Visible", empty);
+                sentEmpty = empty;
+                commands++;
+            }
+            String emptyText = filter.isEmpty() ? "You don't own any tags yet." : "None of your tags match \"" + filter + "\".";
+            if (empty && (full || !emptyText.equals(sentEmptyText))) {
+                builder.set("#EmptyLabel.TextSpans", Message.raw(emptyText));
+                sentEmptyText = emptyText;
+                commands++;
+            }
+
+            boolean previous = page > 0;
+            if (full || previous != sentPrevious) {
+                builder.set("#PreviousButton.Visible", previous);
+                sentPrevious = previous;
+                commands++;
             }
+            boolean next = page < pageCount - 1;
+            if (full || next != sentNext) {
+                builder.set("#NextButton.Visible", next);
+                sentNext = next;
+                commands++;
+            }
+            String pageLabel = pageCount > 1 ? "Page " + (page + 1) + " / " + pageCount : "";
+            if (full || !pageLabel.equals(sentPageLabel)) {
+                builder.set("#PageLabel.TextSpans", Message.raw(pageLabel));
+                sentPageLabel = pageLabel;
+                commands++;
+            }
+            return commands;
+        }
 
-            builder.set("#EmptyLabel.Visible", ownedTags.isEmpty());
-            update(false, builder);
+        /**
+         * Tags that may be listed: every defined tag, or only those matching the filter box. Matches are cached
+         * until the filter changes or tags.json is reloaded.
+         */
+        private TagSet visibleTags() {
+            TagSet definedTags = tagRepository.getDefinedTags();
+            if (filter.isEmpty()) {
+                return definedTags;
+            }
+            if (filterMatches == null || filterDefinedTags != definedTags) {
+                filterMatches = tagRepository.matchTags(filter);
+                filterDefinedTags = definedTags;
+            }
+            return filterMatches;
+        }
+
+        private static String buttonText(boolean equipped) {
+            return equipped ? "De-equip" : "Equip";
         }
 
         private void update(boolean clearExistingUi, UICommandBuilder builder) {
@@ -326,98 +779,63 @@ public class NinjaTagsPlugin extends JavaPlugin {
 
         @Override
         public void handleDataEvent(Ref<EntityStore> ref, Store<EntityStore> store, Data data) {
-            if (data == null || data.tagId == null || data.tagId.isBlank()) {
-                getLogger().atWarning().log("TagsMenuPage event had empty tag id for %s", playerRef.getUuid());
-                sendUpdate();
+            if (data != null && data.filter != null) {
+                filter = data.filter.strip();
+                filterMatches = null;
+                page = 0;
+                pushLiveUiState(playerRef.getUuid());
                 return;
             }
 
-            Player player = store.getComponent(ref, Player.getComponentType());
-            if (player == null) {
+            if (data != null && data.page != null) {
+                page += "Next".equals(data.page) ? 1 : -1;
+                pushLiveUiState(playerRef.getUuid());
                 return;
             }
 
-            UUID playerId = playerRef.getUuid();
-            String equippedTagId = tagRepository.getEquippedTag(playerId);
-            getLogger().atInfo().log("TagsMenuPage click for %s: tagId=%s equipped=%s", playerId, data.tagId, equippedTagId);
-
-            if (data.tagId.equals(equippedTagId)) {
-                deEquip(playerId, player);
-            } else {
-                equipTag(playerId, data.tagId, player);
+            TagDefinition clicked = resolveRow(data);
+            if (clicked == null) {
+                getLogger().atWarning().log("TagsMenuPage event had no tag for row=%s (%s)", data == null ? null : data.row, playerRef.getUuid());
+                return;
             }
 
-            pushLiveUiState(playerId);
-            sendUpdate();
-        }
+            Player player = store.getComponent(ref, Player.getComponentType());
+            if (player == null) {
+                return;
+            }
 
-        private static class Data {
-            private String tagId;
-        }
-    }
+            World world = player.getWorld();
+            if (world == null) {
+                return;
+            }
 
-    private static Message parseTagText(TagDefinition tag) {
-        if (tag == null) {
-            return Message.raw("");
-        }
+            UUID playerId = playerRef.getUuid();
+            String equippedTagId = tagRepository.getEquippedTag(playerId);
+            getLogger().atFine().log("TagsMenuPage click for %s: tagId=%s equipped=%s", playerId, clicked.id(), equippedTagId);
 
-        String sourceText = tag.text();
-        if (sourceText == null || sourceText.isBlank()) {
-            return Message.raw(tag.displayName() == null ? "" : tag.displayName()).color(tag.hexColor());
+            // Clicks made while a change is still in flight queue up and collapse into the last one.
+            CompletableFuture<Boolean> change = clicked.id().equals(equippedTagId)
+                    ? tagCommands.deEquip(playerId, player, world)
+                    : tagCommands.equip(playerId, clicked.id(), player, world);
+            change.whenComplete((changed, error) -> pushLiveUiState(playerId));
         }
 
-        Matcher matcher = INLINE_HEX_PATTERN.matcher(sourceText);
-        List<Message> segments = new ArrayList<>();
-        int cursor = 0;
-        String currentColor = tag.hexColor();
-
-        while (matcher.find()) {
-            if (matcher.start() > cursor) {
-                String chunk = sourceText.substring(cursor, matcher.start());
-                if (!chunk.isEmpty()) {
-                    Message part = Message.raw(chunk);
-                    if (currentColor != null && !currentColor.isBlank()) {
-                        part.color(currentColor);
-                    }
-                    segments.add(part);
-                }
+        private TagDefinition resolveRow(Data data) {
+            if (data == null || data.row == null) {
+                return null;
             }
-
-            currentColor = "#" + matcher.group(1);
-            cursor = matcher.end();
-        }
-
-        if (cursor < sourceText.length()) {
-            String trailing = sourceText.substring(cursor);
-            if (!trailing.isEmpty()) {
-                Message part = Message.raw(trailing);
-                if (currentColor != null && !currentColor.isBlank()) {
-                    part.color(currentColor);
-                }
-                segments.add(part);
+            try {
+                int row = Integer.parseInt(data.row);
+                return row >= 0 && row < MAX_VISIBLE_TAG_ROWS ? tagRepository.getTag(sentOrdinals[row]) : null;
+            } catch (NumberFormatException e) {
+                return null;
             }
         }
 
-        if (segments.isEmpty()) {
-            return Message.raw("");
-        }
-
-        return Message.join(segments.toArray(new Message[0]));
-    }
-
-    private static List<String> parseInput(String input) {
-        String trimmed = input == null ? "" : input.trim();
-        if (trimmed.isEmpty()) {
-            return List.of();
-        }
-
-        String[] split = trimmed.split("\\s+");
-        List<String> out = new ArrayList<>(split.length);
-        for (String arg : split) {
-            if (!arg.isBlank()) {
-                out.add(arg);
-            }
+        private static class Data {
+            private String row;
+            private String page;
+            private String filter;
         }
-        return out;
     }
 }
@@ -0,0 +1,15 @@
+package com.ninja.tags;
+
+/**
+ * One player's resolved permission data, as {@link TagEntitlement} rules see it.
+ */
+interface PermissionSubject {
+    boolean inGroup(String group);
+
+    boolean hasPermission(String node);
+
+    /**
+     * The player's value for meta {@code key}, or null.
+     */
+    String meta(String key);
+}
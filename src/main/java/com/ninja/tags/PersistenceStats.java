@@ -0,0 +1,13 @@
+package com.ninja.tags;
+
+public record PersistenceStats(
+        boolean writeBehind,
+        int pendingChanges,
+        long flushCount,
+        long flushedChanges,
+        int lastBatchSize,
+        double lastFlushMillis,
+        double maxFlushMillis,
+        double averageFlushMillis
+) {
+}
@@ -0,0 +1,9 @@
+package com.ninja.tags;
+
+import java.util.UUID;
+
+/**
+ * One entry of a shared store's change feed: {@code playerId} reached {@code version}, written by {@code serverId}.
+ */
+record PlayerChange(long sequence, UUID playerId, long version, String serverId) {
+}
@@ -0,0 +1,56 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Warms a connecting player's tag data, LuckPerms user and entitlements off the world thread, so their first
+ * {@code /tags} and first equip do not wait for a store read or a LuckPerms load.
+ */
+final class PlayerPrefetcher {
+    private final TagRepository tagRepository;
+    private final LuckPermsTagService luckPermsTagService;
+    private final TagMetrics metrics;
+    private final HytaleLogger logger;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    PlayerPrefetcher(TagRepository tagRepository, LuckPermsTagService luckPermsTagService, TagMetrics metrics, HytaleLogger logger) {
+        this.tagRepository = tagRepository;
+        this.luckPermsTagService = luckPermsTagService;
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    void prefetch(UUID playerId) {
+        TagOperationEvent timing = metrics.start(TagMetrics.Operation.PREFETCH);
+        try {
+            CompletableFuture<Void> tags = CompletableFuture.runAsync(() -> tagRepository.warmPlayer(playerId), executor);
+            CompletableFuture<Void> luckPerms = luckPermsTagService.prefetch(playerId);
+            // Entitlements are checked against the LuckPerms user, so they are warmed again once it is loaded.
+            CompletableFuture.allOf(tags, luckPerms)
+                    .thenRunAsync(() -> tagRepository.warmPlayer(playerId), executor)
+                    .whenComplete((ignored, error) -> {
+                        metrics.stop(timing, playerId, null, error == null);
+                        if (error != null) {
+                            logger.atWarning().withCause(error).log("Failed to prefetch tag data for %s", playerId);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            // Shutting down.
+            metrics.stop(timing, playerId, null, false);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,54 @@
+package com.ninja.tags;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory per-player tag state, stored as interned ordinals. Fields are replaced rather than
+ * mutated so readers never need a lock; writers synchronize on the instance.
+ */
+final class PlayerTagData {
+    volatile TagSet owned = TagSet.EMPTY;
+    volatile int equippedOrdinal = -1;
+
+    final AtomicInteger pendingWrites = new AtomicInteger();
+    volatile long lastAccessNanos = System.nanoTime();
+    boolean evicted;
+    // Shared store only: the version last read from the store, and a count of local changes (guarded by this).
+    volatile long storeVersion;
+    long localChanges;
+
+    static PlayerTagData fromRecord(PlayerTagRecord record, TagOrdinals ordinals) {
+        PlayerTagData data = new PlayerTagData();
+        if (record == null) {
+            return data;
+        }
+        TagSet owned = TagSet.EMPTY;
+        if (record.tags != null) {
+            for (String tagId : record.tags) {
+                if (tagId != null) {
+                    owned = owned.with(ordinals.intern(tagId));
+                }
+            }
+        }
+        data.owned = owned;
+        data.equippedOrdinal = record.equippedTag == null ? -1 : ordinals.intern(record.equippedTag);
+        data.storeVersion = record.version;
+        return data;
+    }
+
+    PlayerTagRecord toRecord(TagOrdinals ordinals) {
+        TagSet ownedSnapshot;
+        int equippedSnapshot;
+        synchronized (this) {
+            ownedSnapshot = owned;
+            equippedSnapshot = equippedOrdinal;
+        }
+
+        PlayerTagRecord record = new PlayerTagRecord();
+        for (int ordinal = ownedSnapshot.nextOrdinal(0); ordinal >= 0; ordinal = ownedSnapshot.nextOrdinal(ordinal + 1)) {
+            record.tags.add(ordinals.id(ordinal));
+        }
+        record.equippedTag = ordinals.id(equippedSnapshot);
+        return record;
+    }
+}
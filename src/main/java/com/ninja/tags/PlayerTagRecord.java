@@ -0,0 +1,38 @@
+package com.ninja.tags;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Storage form of a player's tags, matching one entry of player-tags.json.
+ */
+final class PlayerTagRecord {
+    List<String> tags = new ArrayList<>();
+    String equippedTag;
+    // Shared-store version this record was read at; not part of player-tags.json.
+    transient long version;
+
+    PlayerTagRecord normalize() {
+        if (tags == null) {
+            tags = new ArrayList<>();
+        }
+        return this;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(tags, equippedTag);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PlayerTagRecord other)) {
+            return false;
+        }
+        return Objects.equals(this.tags, other.tags) && Objects.equals(this.equippedTag, other.equippedTag);
+    }
+}
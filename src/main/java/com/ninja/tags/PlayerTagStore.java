@@ -0,0 +1,66 @@
+package com.ninja.tags;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+interface PlayerTagStore extends AutoCloseable {
+    Map<UUID, PlayerTagRecord> loadAll() throws IOException;
+
+    /**
+     * Whether {@link #load} reads only that player, which is what makes lazy loading worthwhile. Stores that
+     * keep everything in one file answer it from a full read.
+     */
+    default boolean loadsPlayersIndividually() {
+        return false;
+    }
+
+    /**
+     * Loads a single player's state, returning an empty entry for players with no stored tags.
+     */
+    PlayerTagRecord load(UUID playerId) throws IOException;
+
+    /**
+     * Streams every stored player that has a tag equipped. Only needed by stores that load players individually.
+     */
+    default void forEachEquipped(BiConsumer<UUID, String> action) throws IOException {
+        for (Map.Entry<UUID, PlayerTagRecord> entry : loadAll().entrySet()) {
+            if (entry.getValue().equippedTag != null) {
+                action.accept(entry.getKey(), entry.getValue().equippedTag);
+            }
+        }
+    }
+
+    /**
+     * Streams every stored player that owns {@code tagId}. Only needed by stores that load players individually.
+     */
+    default void forEachOwner(String tagId, Consumer<UUID> action) throws IOException {
+        for (Map.Entry<UUID, PlayerTagRecord> entry : loadAll().entrySet()) {
+            if (entry.getValue().tags.contains(tagId)) {
+                action.accept(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Streams every stored player. Stores that can read records one at a time should not materialize them all.
+     */
+    default void forEachPlayer(BiConsumer<UUID, PlayerTagRecord> action) throws IOException {
+        for (Map.Entry<UUID, PlayerTagRecord> entry : loadAll().entrySet()) {
+            action.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Persists the given mutations. Stores that cannot apply individual changes may instead
+     * write the full snapshot, which is only materialized when requested.
+     */
+    void write(List<TagMutation> mutations, Supplier<Map<UUID, PlayerTagRecord>> snapshot) throws IOException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,552 @@
+package com.ninja.tags;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Streams player tag ownership in and out as JSON (the player-tags.json format) or CSV ({@code player,tag,equipped}
+ * rows). Imports read {@code batchSize} rows at a time, validate batches in parallel and apply them in file order on
+ * the {@link TagCommandQueue} writer, so memory stays bounded by a few batches whatever the file size.
+ */
+public class PlayerTagTransfer {
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int UNKNOWN_TAG_SAMPLE = 5;
+    private static final String CSV_HEADER = "player,tag,equipped";
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final TagRepository tagRepository;
+    private final TagCommandQueue commands;
+    private final SuffixReconciler suffixReconciler;
+    private final TagExpiries tagExpiries;
+    private final TagAuditLog auditLog;
+    private final int batchSize;
+    private final int parallelism;
+    private final HytaleLogger logger;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-transfer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService validators;
+
+    PlayerTagTransfer(TagRepository tagRepository, TagCommandQueue commands, SuffixReconciler suffixReconciler, TagExpiries tagExpiries,
+                      TagAuditLog auditLog, int batchSize, HytaleLogger logger) {
+        this.tagRepository = tagRepository;
+        this.commands = commands;
+        this.suffixReconciler = suffixReconciler;
+        this.tagExpiries = tagExpiries;
+        this.auditLog = auditLog;
+        this.batchSize = batchSize;
+        this.parallelism = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        this.logger = logger;
+        AtomicInteger threads = new AtomicInteger();
+        this.validators = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ninjatags-import-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Grants every valid row of {@code file} in the background. The audit log gets one summary entry under
+     * {@code actor} rather than one per row. Returns false if an import or export is still running.
+     */
+    public boolean importAsync(String actor, Path file, Format format, Consumer<String> progress) {
+        return runAsync("Import of " + file.getFileName(), progress, () -> runImport(actor, file, format, progress));
+    }
+
+    /**
+     * Writes every player's tags to {@code file} in the background. Returns false if an import or export is still running.
+     */
+    public boolean exportAsync(Path file, Format format, Consumer<String> progress) {
+        return runAsync("Export to " + file.getFileName(), progress, () -> runExport(file, format, progress));
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        validators.shutdownNow();
+    }
+
+    private boolean runAsync(String description, Consumer<String> progress, Task task) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.atSevere().withCause(e).log("%s failed", description);
+                progress.accept(description + " failed: " + e.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    private void runImport(String actor, Path file, Format format, Consumer<String> progress) throws Exception {
+        long started = System.nanoTime();
+        progress.accept("Importing " + file.getFileName() + " (" + format.extension + ")...");
+        ImportTotals totals = new ImportTotals();
+        // Batches being validated, oldest first; applying them in this order keeps the file's row order.
+        Deque<Future<ValidatedBatch>> validating = new ArrayDeque<>();
+        long lastReport = System.nanoTime();
+        try (RowSource rows = format == Format.CSV ? new CsvRowSource(file) : new JsonRowSource(file)) {
+            List<RawRow> batch;
+            while (!(batch = rows.next(batchSize)).isEmpty()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException("Interrupted after " + totals.rows + " rows");
+                }
+                List<RawRow> toValidate = batch;
+                validating.addLast(validators.submit(() -> validate(toValidate)));
+                if (validating.size() > parallelism) {
+                    apply(validating.removeFirst().get(), totals);
+                }
+
+                long now = System.nanoTime();
+                if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                    lastReport = now;
+                    progress.accept(String.format(Locale.ROOT, "Import: %d rows (%.0f rows/s)",
+                            totals.rows, ratePerSecond(totals.rows, elapsedMillis(started))));
+                }
+            }
+            while (!validating.isEmpty()) {
+                apply(validating.removeFirst().get(), totals);
+            }
+        } finally {
+            validating.forEach(pending -> pending.cancel(true));
+        }
+
+        tagRepository.flush();
+        auditLog.record(actor, "import", null, null, null, String.format(Locale.ROOT, "%s: rows=%d granted=%d equipped=%d",
+                file.getFileName(), totals.rows, totals.granted, totals.equipped));
+        long elapsed = elapsedMillis(started);
+        progress.accept(String.format(Locale.ROOT,
+                "Imported %s: rows=%d granted=%d unchanged=%d equipped=%d invalidPlayers=%d unknownTags=%d in %dms (%.0f rows/s).",
+                file.getFileName(), totals.rows, totals.granted, totals.unchanged, totals.equipped,
+                totals.invalidPlayers, totals.unknownTags, elapsed, ratePerSecond(totals.rows, elapsed)));
+        if (!totals.unknownTagSample.isEmpty()) {
+            progress.accept("Unknown tag ids include: " + String.join(", ", totals.unknownTagSample));
+        }
+        if (totals.equipped > 0 && !suffixReconciler.reconcileAsync(progress)) {
+            progress.accept("A suffix reconciliation is already running; run /tagsadmin reconcile afterwards to apply imported equipped tags.");
+        }
+    }
+
+    /**
+     * Resolves player ids and tag ids off the writer. Runs on a validator thread, so it only reads the catalog.
+     */
+    private ValidatedBatch validate(List<RawRow> rows) {
+        ValidatedBatch batch = new ValidatedBatch(rows.size());
+        for (RawRow row : rows) {
+            UUID playerId;
+            try {
+                playerId = row.player() == null ? null : UUID.fromString(row.player().strip());
+            } catch (IllegalArgumentException e) {
+                playerId = null;
+            }
+            if (playerId == null) {
+                batch.invalidPlayers++;
+                continue;
+            }
+            TagDefinition tag = row.tag() == null ? null : tagRepository.getTag(row.tag().strip());
+            if (tag == null) {
+                batch.unknownTags++;
+                if (row.tag() != null && batch.unknownTagSample.size() < UNKNOWN_TAG_SAMPLE) {
+                    batch.unknownTagSample.add(row.tag().strip());
+                }
+                continue;
+            }
+            batch.rows.add(new Row(playerId, tag.id(), row.owned(), row.equipped()));
+        }
+        return batch;
+    }
+
+    private void apply(ValidatedBatch batch, ImportTotals totals) {
+        // Imported tags are permanent, like bulk grants, so a pending deadline must not revoke them later.
+        Map<String, List<UUID>> ownersByTag = new HashMap<>();
+        for (Row row : batch.rows) {
+            if (row.owned()) {
+                ownersByTag.computeIfAbsent(row.tagId(), ignored -> new ArrayList<>()).add(row.playerId());
+            }
+        }
+        ownersByTag.forEach((tagId, owners) -> tagExpiries.cancel(owners, tagId));
+
+        commands.call(() -> {
+            for (Row row : batch.rows) {
+                if (row.owned()) {
+                    if (tagRepository.grantTag(row.playerId(), row.tagId())) {
+                        totals.granted++;
+                    } else {
+                        totals.unchanged++;
+                    }
+                }
+                // Never overrides a tag the player already chose.
+                if (row.equipped() && tagRepository.getEquippedTag(row.playerId()) == null
+                        && tagRepository.playerHasTag(row.playerId(), row.tagId())) {
+                    tagRepository.setEquippedTag(row.playerId(), row.tagId());
+                    totals.equipped++;
+                }
+            }
+            return null;
+        }).join();
+
+        totals.rows += batch.size;
+        totals.invalidPlayers += batch.invalidPlayers;
+        totals.unknownTags += batch.unknownTags;
+        for (String tagId : batch.unknownTagSample) {
+            if (totals.unknownTagSample.size() < UNKNOWN_TAG_SAMPLE) {
+                totals.unknownTagSample.add(tagId);
+            }
+        }
+        Set<UUID> touched = new LinkedHashSet<>();
+        for (Row row : batch.rows) {
+            touched.add(row.playerId());
+        }
+        tagRepository.release(touched);
+    }
+
+    private void runExport(Path file, Format format, Consumer<String> progress) throws IOException {
+        long started = System.nanoTime();
+        long[] counts = new long[2];
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+            try {
+                if (format == Format.CSV) {
+                    exportCsv(out, counts);
+                } else {
+                    exportJson(out, counts);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        long elapsed = elapsedMillis(started);
+        progress.accept(String.format(Locale.ROOT, "Exported %d players (%d rows) to %s in %dms (%.0f rows/s).",
+                counts[0], counts[1], file.getFileName(), elapsed, ratePerSecond(counts[1], elapsed)));
+    }
+
+    private void exportJson(Writer out, long[] counts) throws IOException {
+        JsonWriter json = gson.newJsonWriter(out);
+        json.beginObject();
+        tagRepository.forEachPlayer((playerId, record) -> {
+            try {
+                json.name(playerId.toString());
+                gson.toJson(record, PlayerTagRecord.class, json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            counts[0]++;
+            counts[1] += record.tags.size();
+        });
+        json.endObject();
+        json.flush();
+    }
+
+    private void exportCsv(Writer out, long[] counts) throws IOException {
+        out.write(CSV_HEADER);
+        out.write('\n');
+        tagRepository.forEachPlayer((playerId, record) -> {
+            try {
+                for (String tagId : record.tags) {
+                    out.write(playerId.toString());
+                    out.write(',');
+                    out.write(csvField(tagId));
+                    out.write(tagId.equals(record.equippedTag) ? ",true\n" : ",false\n");
+                    counts[1]++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            counts[0]++;
+        });
+    }
+
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields with {@code ""} escapes. Fields are not stripped.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>(3);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000L;
+    }
+
+    private static double ratePerSecond(long count, long elapsedMillis) {
+        return elapsedMillis <= 0 ? count : count * 1000.0 / elapsedMillis;
+    }
+
+    public enum Format {
+        JSON("json"),
+        CSV("csv");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /**
+         * The format named by {@code name} ({@code json} or {@code csv}), or null.
+         */
+        public static Format parse(String name) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * The format implied by the file's extension, or null.
+         */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            return dot < 0 ? null : parse(name.substring(dot + 1));
+        }
+    }
+
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    interface RowSource extends Closeable {
+        /**
+         * Reads about {@code max} rows; empty once the file is exhausted.
+         */
+        List<RawRow> next(int max) throws IOException;
+    }
+
+    /**
+     * {@code player,tag[,equipped]} per line. Blank lines, {@code #} comments and a leading header are skipped.
+     */
+    static final class CsvRowSource implements RowSource {
+        private final BufferedReader in;
+        private boolean firstLine = true;
+
+        CsvRowSource(Path file) throws IOException {
+            this.in = Files.newBufferedReader(file);
+        }
+
+        @Override
+        public List<RawRow> next(int max) throws IOException {
+            List<RawRow> rows = new ArrayList<>(max);
+            String line;
+            while (rows.size() < max && (line = in.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                List<String> fields = splitCsv(line);
+                if (firstLine) {
+                    firstLine = false;
+                    String first = fields.getFirst().strip().toLowerCase(Locale.ROOT);
+                    if (first.equals("player") || first.equals("uuid")) {
+                        continue;
+                    }
+                }
+                boolean equipped = fields.size() > 2 && Boolean.parseBoolean(fields.get(2).strip());
+                rows.add(new RawRow(fields.getFirst(), fields.size() > 1 ? fields.get(1) : null, true, equipped));
+            }
+            return rows;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * The player-tags.json layout, read one player object at a time. An equipped tag the player does not own is
+     * kept as an equip-only row, since it may come from an entitlement rule.
+     */
+    static final class JsonRowSource implements RowSource {
+        private final JsonReader in;
+        private boolean started;
+
+        JsonRowSource(Path file) throws IOException {
+            this.in = new JsonReader(Files.newBufferedReader(file));
+        }
+
+        @Override
+        public List<RawRow> next(int max) throws IOException {
+            List<RawRow> rows = new ArrayList<>(max);
+            try {
+                if (!started) {
+                    started = true;
+                    if (isEmptyDocument()) {
+                        return rows;
+                    }
+                    in.beginObject();
+                }
+                while (rows.size() < max && in.hasNext()) {
+                    readPlayer(in.nextName(), rows);
+                }
+                return rows;
+            } catch (IllegalStateException | JsonParseException e) {
+                throw new IOException("Invalid player tags JSON at " + in.getPath() + ": " + e.getMessage(), e);
+            }
+        }
+
+        private boolean isEmptyDocument() throws IOException {
+            try {
+                return in.peek() == JsonToken.END_DOCUMENT;
+            } catch (EOFException e) {
+                // JsonReader reports a document with no value at all as a premature end of input.
+                return true;
+            }
+        }
+
+        private void readPlayer(String player, List<RawRow> rows) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return;
+            }
+            List<String> tags = new ArrayList<>();
+            String equippedTag = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (field.equals("tags") && in.peek() == JsonToken.BEGIN_ARRAY) {
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        if (in.peek() == JsonToken.STRING) {
+                            tags.add(in.nextString());
+                        } else {
+                            in.skipValue();
+                        }
+                    }
+                    in.endArray();
+                } else if (field.equals("equippedTag") && in.peek() == JsonToken.STRING) {
+                    equippedTag = in.nextString();
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            for (String tagId : tags) {
+                rows.add(new RawRow(player, tagId, true, tagId.equals(equippedTag)));
+            }
+            if (equippedTag != null && !tags.contains(equippedTag)) {
+                rows.add(new RawRow(player, equippedTag, false, true));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    record RawRow(String player, String tag, boolean owned, boolean equipped) {
+    }
+
+    private record Row(UUID playerId, String tagId, boolean owned, boolean equipped) {
+    }
+
+    private static final class ValidatedBatch {
+        final int size;
+        final List<Row> rows;
+        final Set<String> unknownTagSample = new LinkedHashSet<>();
+        int invalidPlayers;
+        int unknownTags;
+
+        ValidatedBatch(int size) {
+            this.size = size;
+            this.rows = new ArrayList<>(size);
+        }
+    }
+
+    // Counters are updated on the writer and the transfer thread in turn, ordered by joining each batch.
+    private static final class ImportTotals {
+        final Set<String> unknownTagSample = new LinkedHashSet<>();
+        long rows;
+        long granted;
+        long unchanged;
+        long equipped;
+        long invalidPlayers;
+        long unknownTags;
+    }
+}
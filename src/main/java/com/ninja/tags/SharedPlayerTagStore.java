@@ -0,0 +1,27 @@
+package com.ninja.tags;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A player store that several servers write to at once. Every write bumps a version per changed player and
+ * appends it to a change feed, so each server can refresh just the players another server changed.
+ * Records returned by {@link #load} carry the version they were read at.
+ */
+interface SharedPlayerTagStore extends PlayerTagStore {
+    /**
+     * Sequence number of the newest change ever written, or 0 if there was none. It does not go back when
+     * {@link #pruneChanges} empties the feed, so the next change follows it without a gap.
+     */
+    long latestChange() throws IOException;
+
+    /**
+     * Up to {@code limit} changes after {@code afterSequence}, oldest first.
+     */
+    List<PlayerChange> changesSince(long afterSequence, int limit) throws IOException;
+
+    /**
+     * Drops feed entries written before {@code cutoffMillis} (epoch milliseconds).
+     */
+    void pruneChanges(long cutoffMillis) throws IOException;
+}
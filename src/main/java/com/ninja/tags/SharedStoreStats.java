@@ -0,0 +1,13 @@
+package com.ninja.tags;
+
+public record SharedStoreStats(
+        boolean enabled,
+        String serverId,
+        long lastSequence,
+        long polls,
+        long remoteChanges,
+        long refreshedPlayers,
+        long feedGaps,
+        int deferredPlayers
+) {
+}
@@ -0,0 +1,426 @@
+package com.ninja.tags;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+final class SqlitePlayerTagStore implements SharedPlayerTagStore {
+    private static final int SCHEMA_VERSION = 1;
+    private static final int PLAYER_PAGE_SIZE = 1000;
+
+    private final Connection connection;
+    // Set when the database is shared with other servers; writes then also record versions and the change feed.
+    private final String serverId;
+
+    private SqlitePlayerTagStore(Connection connection, String serverId) {
+        this.connection = connection;
+        this.serverId = serverId;
+    }
+
+    static SqlitePlayerTagStore open(Path file) throws IOException {
+        return open(file, null);
+    }
+
+    /**
+     * Opens a database that other servers use at the same time, on the same host or a filesystem with working
+     * SQLite locking. Writes made here are tagged with {@code serverId} in the change feed.
+     */
+    static SqlitePlayerTagStore openShared(Path file, String serverId) throws IOException {
+        return open(file, serverId);
+    }
+
+    private static SqlitePlayerTagStore open(Path file, String serverId) throws IOException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath());
+            try (Statement st = connection.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=NORMAL");
+                // Other servers can hold the write lock briefly; wait for it rather than failing the flush.
+                st.execute("PRAGMA busy_timeout=5000");
+                st.execute("CREATE TABLE IF NOT EXISTS player_tags ("
+                        + "player_id TEXT NOT NULL, "
+                        + "tag_id TEXT NOT NULL, "
+                        + "PRIMARY KEY (player_id, tag_id))");
+                st.execute("CREATE INDEX IF NOT EXISTS player_tags_by_tag ON player_tags (tag_id)");
+                st.execute("CREATE TABLE IF NOT EXISTS player_equipped ("
+                        + "player_id TEXT PRIMARY KEY, "
+                        + "tag_id TEXT NOT NULL)");
+                if (serverId != null) {
+                    st.execute("CREATE TABLE IF NOT EXISTS player_versions ("
+                            + "player_id TEXT PRIMARY KEY, "
+                            + "version INTEGER NOT NULL)");
+                    st.execute("CREATE TABLE IF NOT EXISTS change_log ("
+                            + "seq INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + "player_id TEXT NOT NULL, "
+                            + "version INTEGER NOT NULL, "
+                            + "server_id TEXT NOT NULL, "
+                            + "changed_at INTEGER NOT NULL)");
+                    st.execute("CREATE INDEX IF NOT EXISTS change_log_by_time ON change_log (changed_at)");
+                }
+            }
+            return new SqlitePlayerTagStore(connection, serverId);
+        } catch (ClassNotFoundException | SQLException e) {
+            throw new IOException("Failed to open SQLite tag store " + file, e);
+        }
+    }
+
+    /**
+     * Whether the one-shot import from player-tags.json has already run against this database.
+     */
+    boolean isMigrated() throws IOException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            return rs.next() && rs.getInt(1) >= SCHEMA_VERSION;
+        } catch (SQLException e) {
+            throw new IOException("Failed to read SQLite schema version", e);
+        }
+    }
+
+    synchronized void importAll(Map<UUID, PlayerTagRecord> players) throws IOException {
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement tags = connection.prepareStatement("INSERT OR IGNORE INTO player_tags (player_id, tag_id) VALUES (?, ?)");
+                 PreparedStatement equipped = connection.prepareStatement("INSERT OR REPLACE INTO player_equipped (player_id, tag_id) VALUES (?, ?)");
+                 Statement st = connection.createStatement()) {
+                for (Map.Entry<UUID, PlayerTagRecord> entry : players.entrySet()) {
+                    PlayerTagRecord data = entry.getValue();
+                    if (data == null) {
+                        continue;
+                    }
+                    if (data.tags != null) {
+                        for (String tagId : data.tags) {
+                            tags.setString(1, entry.getKey().toString());
+                            tags.setString(2, tagId);
+                            tags.addBatch();
+                        }
+                    }
+                    if (data.equippedTag != null) {
+                        equipped.setString(1, entry.getKey().toString());
+                        equipped.setString(2, data.equippedTag);
+                        equipped.addBatch();
+                    }
+                }
+                tags.executeBatch();
+                equipped.executeBatch();
+                st.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            }
+            if (serverId != null) {
+                recordChanges(players.keySet());
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollbackQuietly();
+            throw new IOException("Failed to import player tags into SQLite", e);
+        } finally {
+            restoreAutoCommit();
+        }
+    }
+
+    @Override
+    public boolean loadsPlayersIndividually() {
+        return true;
+    }
+
+    @Override
+    public synchronized PlayerTagRecord load(UUID playerId) throws IOException {
+        PlayerTagRecord data = new PlayerTagRecord();
+        String key = playerId.toString();
+        // One read transaction, so the version matches the tags when other servers write concurrently.
+        try {
+            connection.setAutoCommit(false);
+            readPlayer(key, data);
+            if (serverId != null) {
+                try (PreparedStatement version = connection.prepareStatement("SELECT version FROM player_versions WHERE player_id = ?")) {
+                    version.setString(1, key);
+                    try (ResultSet rs = version.executeQuery()) {
+                        data.version = rs.next() ? rs.getLong(1) : 0;
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollbackQuietly();
+            throw new IOException("Failed to load player " + playerId + " from SQLite", e);
+        } finally {
+            restoreAutoCommit();
+        }
+        return data;
+    }
+
+    private void readPlayer(String key, PlayerTagRecord data) throws SQLException {
+        try (PreparedStatement tags = connection.prepareStatement("SELECT tag_id FROM player_tags WHERE player_id = ? ORDER BY rowid");
+             PreparedStatement equipped = connection.prepareStatement("SELECT tag_id FROM player_equipped WHERE player_id = ?")) {
+            tags.setString(1, key);
+            List<String> owned = new ArrayList<>();
+            try (ResultSet rs = tags.executeQuery()) {
+                while (rs.next()) {
+                    owned.add(rs.getString(1));
+                }
+            }
+            data.tags = owned;
+
+            equipped.setString(1, key);
+            try (ResultSet rs = equipped.executeQuery()) {
+                if (rs.next()) {
+                    data.equippedTag = rs.getString(1);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void forEachEquipped(BiConsumer<UUID, String> action) throws IOException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT player_id, tag_id FROM player_equipped")) {
+            while (rs.next()) {
+                action.accept(UUID.fromString(rs.getString(1)), rs.getString(2));
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Failed to read equipped tags from SQLite", e);
+        }
+    }
+
+    @Override
+    public synchronized void forEachOwner(String tagId, Consumer<UUID> action) throws IOException {
+        try (PreparedStatement st = connection.prepareStatement("SELECT player_id FROM player_tags WHERE tag_id = ?")) {
+            st.setString(1, tagId);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(UUID.fromString(rs.getString(1)));
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Failed to read owners of tag " + tagId + " from SQLite", e);
+        }
+    }
+
+    @Override
+    public void forEachPlayer(BiConsumer<UUID, PlayerTagRecord> action) throws IOException {
+        // Keyset pages of players; the connection is released between pages, so flushes and player loads are not
+        // held up for a whole export, and the action never runs under the store lock.
+        String after = "";
+        while (true) {
+            Map<String, PlayerTagRecord> page = readPlayerPage(after);
+            for (Map.Entry<String, PlayerTagRecord> player : page.entrySet()) {
+                UUID playerId;
+                try {
+                    playerId = UUID.fromString(player.getKey());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid player id in SQLite: " + player.getKey(), e);
+                }
+                action.accept(playerId, player.getValue());
+                after = player.getKey();
+            }
+            if (page.size() < PLAYER_PAGE_SIZE) {
+                return;
+            }
+        }
+    }
+
+    private synchronized Map<String, PlayerTagRecord> readPlayerPage(String after) throws IOException {
+        Map<String, PlayerTagRecord> page = new LinkedHashMap<>();
+        try (PreparedStatement st = connection.prepareStatement("WITH page AS ("
+                + "SELECT player_id FROM player_tags WHERE player_id > ?1 "
+                + "UNION SELECT player_id FROM player_equipped WHERE player_id > ?1 "
+                + "ORDER BY player_id LIMIT ?2) "
+                + "SELECT player_id, tag_id, 0 FROM player_tags WHERE player_id IN page "
+                + "UNION ALL SELECT player_id, tag_id, 1 FROM player_equipped WHERE player_id IN page ORDER BY 1, 3")) {
+            st.setString(1, after);
+            st.setInt(2, PLAYER_PAGE_SIZE);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    PlayerTagRecord data = page.computeIfAbsent(rs.getString(1), ignored -> new PlayerTagRecord());
+                    if (rs.getInt(3) == 0) {
+                        data.tags.add(rs.getString(2));
+                    } else {
+                        data.equippedTag = rs.getString(2);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException("Failed to read player tags from SQLite", e);
+        }
+        return page;
+    }
+
+    @Override
+    public synchronized Map<UUID, PlayerTagRecord> loadAll() throws IOException {
+        Map<UUID, List<String>> tags = new HashMap<>();
+        Map<UUID, PlayerTagRecord> players = new HashMap<>();
+        try (Statement st = connection.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT player_id, tag_id FROM player_tags ORDER BY rowid")) {
+                while (rs.next()) {
+                    tags.computeIfAbsent(UUID.fromString(rs.getString(1)), ignored -> new ArrayList<>()).add(rs.getString(2));
+                }
+            }
+            try (ResultSet rs = st.executeQuery("SELECT player_id, tag_id FROM player_equipped")) {
+                while (rs.next()) {
+                    players.computeIfAbsent(UUID.fromString(rs.getString(1)), ignored -> new PlayerTagRecord()).equippedTag = rs.getString(2);
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Failed to load player tags from SQLite", e);
+        }
+
+        for (Map.Entry<UUID, List<String>> entry : tags.entrySet()) {
+            players.computeIfAbsent(entry.getKey(), ignored -> new PlayerTagRecord()).tags = entry.getValue();
+        }
+        return players;
+    }
+
+    @Override
+    public synchronized void write(List<TagMutation> mutations, Supplier<Map<UUID, PlayerTagRecord>> snapshot) throws IOException {
+        if (mutations.isEmpty()) {
+            return;
+        }
+
+        try {
+            connection.setAutoCommit(false);
+            try (PreparedStatement grant = connection.prepareStatement("INSERT OR IGNORE INTO player_tags (player_id, tag_id) VALUES (?, ?)");
+                 PreparedStatement revoke = connection.prepareStatement("DELETE FROM player_tags WHERE player_id = ? AND tag_id = ?");
+                 PreparedStatement equip = connection.prepareStatement("INSERT INTO player_equipped (player_id, tag_id) VALUES (?, ?) "
+                         + "ON CONFLICT(player_id) DO UPDATE SET tag_id = excluded.tag_id");
+                 PreparedStatement unequip = connection.prepareStatement("DELETE FROM player_equipped WHERE player_id = ?")) {
+                // Statements are executed in mutation order so a grant followed by a revoke of the same tag nets out.
+                for (TagMutation mutation : mutations) {
+                    switch (mutation.type()) {
+                        case GRANT -> {
+                            grant.setString(1, mutation.playerId().toString());
+                            grant.setString(2, mutation.tagId());
+                            grant.executeUpdate();
+                        }
+                        case REVOKE -> {
+                            revoke.setString(1, mutation.playerId().toString());
+                            revoke.setString(2, mutation.tagId());
+                            revoke.executeUpdate();
+                        }
+                        case EQUIP -> {
+                            if (mutation.tagId() == null) {
+                                unequip.setString(1, mutation.playerId().toString());
+                                unequip.executeUpdate();
+                            } else {
+                                equip.setString(1, mutation.playerId().toString());
+                                equip.setString(2, mutation.tagId());
+                                equip.executeUpdate();
+                            }
+                        }
+                    }
+                }
+            }
+            if (serverId != null) {
+                Set<UUID> changed = new LinkedHashSet<>();
+                for (TagMutation mutation : mutations) {
+                    changed.add(mutation.playerId());
+                }
+                recordChanges(changed);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            rollbackQuietly();
+            throw new IOException("Failed to write " + mutations.size() + " tag changes to SQLite", e);
+        } finally {
+            restoreAutoCommit();
+        }
+    }
+
+    private void recordChanges(Collection<UUID> changed) throws SQLException {
+        long now = System.currentTimeMillis();
+        try (PreparedStatement bump = connection.prepareStatement("INSERT INTO player_versions (player_id, version) VALUES (?, 1) "
+                + "ON CONFLICT(player_id) DO UPDATE SET version = version + 1 RETURNING version");
+             PreparedStatement log = connection.prepareStatement("INSERT INTO change_log (player_id, version, server_id, changed_at) VALUES (?, ?, ?, ?)")) {
+            for (UUID playerId : changed) {
+                bump.setString(1, playerId.toString());
+                long version;
+                try (ResultSet rs = bump.executeQuery()) {
+                    rs.next();
+                    version = rs.getLong(1);
+                }
+                log.setString(1, playerId.toString());
+                log.setLong(2, version);
+                log.setString(3, serverId);
+                log.setLong(4, now);
+                log.addBatch();
+            }
+            log.executeBatch();
+        }
+    }
+
+    @Override
+    public synchronized long latestChange() throws IOException {
+        try (Statement st = connection.createStatement();
+             // AUTOINCREMENT keeps the highest sequence handed out here, even after the rows were pruned.
+             ResultSet rs = st.executeQuery("SELECT COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'change_log'), 0)")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new IOException("Failed to read the SQLite change feed", e);
+        }
+    }
+
+    @Override
+    public synchronized List<PlayerChange> changesSince(long afterSequence, int limit) throws IOException {
+        List<PlayerChange> changes = new ArrayList<>();
+        try (PreparedStatement st = connection.prepareStatement("SELECT seq, player_id, version, server_id FROM change_log "
+                + "WHERE seq > ? ORDER BY seq LIMIT ?")) {
+            st.setLong(1, afterSequence);
+            st.setInt(2, limit);
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new PlayerChange(rs.getLong(1), UUID.fromString(rs.getString(2)), rs.getLong(3), rs.getString(4)));
+                }
+            }
+        } catch (SQLException | IllegalArgumentException e) {
+            throw new IOException("Failed to read the SQLite change feed", e);
+        }
+        return changes;
+    }
+
+    @Override
+    public synchronized void pruneChanges(long cutoffMillis) throws IOException {
+        try (PreparedStatement st = connection.prepareStatement("DELETE FROM change_log WHERE changed_at < ?")) {
+            st.setLong(1, cutoffMillis);
+            st.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Failed to prune the SQLite change feed", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void rollbackQuietly() {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void restoreAutoCommit() {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.ninja.tags;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Where managed tag suffixes are stored. {@link LuckPermsSuffixBackend} is the default;
+ * {@link InMemorySuffixBackend} stands in for it when testing without LuckPerms.
+ */
+public interface SuffixBackend {
+    /**
+     * Replaces the player's managed suffix, or removes it when {@code suffix} is null.
+     */
+    CompletableFuture<Void> writeSuffix(UUID playerId, String suffix);
+
+    /**
+     * Managed suffix of every user that has one, including offline users.
+     */
+    CompletableFuture<Map<UUID, String>> loadManagedSuffixes();
+
+    /**
+     * Whether the player's managed suffix is already known to be {@code suffix} (null meaning none), without
+     * loading anything. False when unsure.
+     */
+    default boolean hasSuffix(UUID playerId, String suffix) {
+        return false;
+    }
+
+    /**
+     * Loads whatever the backend keeps per player, so the first write and {@link #hasSuffix} do not wait for it.
+     */
+    default CompletableFuture<Void> prefetch(UUID playerId) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    default void shutdown() {
+    }
+}
@@ -0,0 +1,197 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Brings LuckPerms' managed suffix nodes back in line with the equipped tags in {@link TagRepository},
+ * rewriting only users whose suffix differs. Rewrites go through the {@link TagCommandQueue}.
+ */
+public class SuffixReconciler {
+    private final TagRepository tagRepository;
+    private final LuckPermsTagService luckPermsTagService;
+    private final TagCommandQueue commands;
+    private final int parallelism;
+    private final int batchSize;
+    private final HytaleLogger logger;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-reconciler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    SuffixReconciler(TagRepository tagRepository, LuckPermsTagService luckPermsTagService, TagCommandQueue commands,
+                     int parallelism, int batchSize, HytaleLogger logger) {
+        this.tagRepository = tagRepository;
+        this.luckPermsTagService = luckPermsTagService;
+        this.commands = commands;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.logger = logger;
+    }
+
+    /**
+     * Starts a reconciliation in the background. Returns false if one is already running.
+     */
+    public boolean reconcileAsync(Consumer<String> progress) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                reconcile(progress);
+            } catch (Exception e) {
+                logger.atSevere().withCause(e).log("Suffix reconciliation failed");
+                progress.accept("Suffix reconciliation failed: " + LuckPermsTagService.describeFailure(e));
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Rewrites the suffix of each given player from their equipped tag, queued behind any running reconciliation.
+     */
+    public void refreshAsync(Collection<UUID> playerIds, Consumer<String> progress) {
+        List<UUID> players = new ArrayList<>(playerIds);
+        if (players.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            long started = System.nanoTime();
+            try {
+                int failed = rewriteAll(players, "Refreshed", progress, started);
+                long elapsed = elapsedMillis(started);
+                progress.accept(String.format(Locale.ROOT, "Suffix refresh done: rewritten=%d failed=%d in %dms (%.0f users/s).",
+                        players.size() - failed, failed, elapsed, ratePerSecond(players.size(), elapsed)));
+            } catch (Exception e) {
+                logger.atSevere().withCause(e).log("Suffix refresh failed");
+                progress.accept("Suffix refresh failed: " + LuckPermsTagService.describeFailure(e));
+            }
+        });
+    }
+
+    /**
+     * Refreshes the suffix of every player who has one of {@code tagIds} equipped, for example after their
+     * definitions changed or were removed from tags.json.
+     */
+    public void refreshEquippedAsync(Collection<String> tagIds, Consumer<String> progress) {
+        Set<String> stale = new HashSet<>(tagIds);
+        if (stale.isEmpty()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                List<UUID> affected = new ArrayList<>();
+                for (Map.Entry<UUID, String> entry : tagRepository.getEquippedTags().entrySet()) {
+                    if (stale.contains(entry.getValue())) {
+                        affected.add(entry.getKey());
+                    }
+                }
+                if (!affected.isEmpty()) {
+                    progress.accept("Refreshing suffixes for " + affected.size() + " players wearing changed tags...");
+                    refreshAsync(affected, progress);
+                }
+            } catch (Exception e) {
+                logger.atSevere().withCause(e).log("Failed to find players wearing changed tags");
+                progress.accept("Suffix refresh failed: " + LuckPermsTagService.describeFailure(e));
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void reconcile(Consumer<String> progress) throws Exception {
+        long started = System.nanoTime();
+        Map<UUID, String> actual = luckPermsTagService.loadManagedSuffixes().join();
+        Map<UUID, String> equipped = tagRepository.getEquippedTags();
+
+        Set<UUID> candidates = new HashSet<>(actual.keySet());
+        candidates.addAll(equipped.keySet());
+        List<UUID> mismatched = new ArrayList<>();
+        for (UUID playerId : candidates) {
+            if (!Objects.equals(expectedSuffix(equipped.get(playerId)), actual.get(playerId))) {
+                mismatched.add(playerId);
+            }
+        }
+
+        if (mismatched.isEmpty()) {
+            progress.accept(String.format(Locale.ROOT, "Suffixes already in sync (%d players checked in %dms).",
+                    candidates.size(), elapsedMillis(started)));
+            return;
+        }
+        progress.accept(String.format(Locale.ROOT, "Reconciling %d of %d players with stale suffixes...", mismatched.size(), candidates.size()));
+
+        int failed = rewriteAll(mismatched, "Reconciled", progress, started);
+        long elapsed = elapsedMillis(started);
+        progress.accept(String.format(Locale.ROOT, "Suffix reconciliation done: checked=%d rewritten=%d failed=%d in %dms (%.0f users/s).",
+                candidates.size(), mismatched.size() - failed, failed, elapsed, ratePerSecond(mismatched.size(), elapsed)));
+    }
+
+    /**
+     * Rewrites the given players' suffixes in batches, reporting progress after each batch. Returns the number of failures.
+     */
+    private int rewriteAll(List<UUID> players, String verb, Consumer<String> progress, long started) throws InterruptedException {
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicInteger failed = new AtomicInteger();
+        for (int batchStart = 0; batchStart < players.size(); batchStart += batchSize) {
+            List<UUID> batch = players.subList(batchStart, Math.min(players.size(), batchStart + batchSize));
+            List<CompletableFuture<Boolean>> writes = new ArrayList<>(batch.size());
+            for (UUID playerId : batch) {
+                permits.acquire();
+                writes.add(rewrite(playerId)
+                        .whenComplete((ignored, error) -> {
+                            permits.release();
+                            if (error != null) {
+                                failed.incrementAndGet();
+                                logger.atWarning().withCause(error).log("Failed to rewrite suffix for %s", playerId);
+                            }
+                        }));
+            }
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).exceptionally(error -> null).join();
+
+            int done = batchStart + batch.size();
+            long elapsed = elapsedMillis(started);
+            progress.accept(String.format(Locale.ROOT, "%s %d/%d (%.0f users/s)", verb, done, players.size(), ratePerSecond(done, elapsed)));
+        }
+        return failed.get();
+    }
+
+    private CompletableFuture<Boolean> rewrite(UUID playerId) {
+        // Queued with the player's equips, and re-read there, so a player who changed tags since the scan is not reverted.
+        return commands.refreshSuffix(playerId);
+    }
+
+    private String expectedSuffix(String tagId) {
+        TagDefinition tag = tagRepository.getTag(tagId);
+        return tag == null ? null : tag.formattedSuffix();
+    }
+
+    private static long elapsedMillis(long startedNanos) {
+        return (System.nanoTime() - startedNanos) / 1_000_000L;
+    }
+
+    private static double ratePerSecond(int count, long elapsedMillis) {
+        return elapsedMillis <= 0 ? count : count * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,532 @@
+package com.ninja.tags;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Durable record of admin tag changes. {@link #record} only publishes into a lock-free ring buffer; the
+ * "ninjatags-audit" thread appends what is buffered to audit/audit-NNNNNN.log as JSON lines, one write per batch,
+ * and starts a new segment once one reaches {@code maxFileBytes}. Finished segments get a per-player index sorted
+ * by UUID (.idx) and the active one is indexed in memory, so a player's history is a binary search per segment
+ * rather than a scan of the logs.
+ */
+public class TagAuditLog {
+    static final String SYSTEM_ACTOR = "system";
+
+    private static final int RING_CAPACITY = 1 << 16;
+    private static final int WRITE_BATCH = 4096;
+    private static final long DRAIN_INTERVAL_MILLIS = 250;
+    private static final int INDEX_HEADER_BYTES = 4;
+    private static final int INDEX_ENTRY_BYTES = 24;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("audit-(\\d{6})\\.log");
+
+    private final Gson gson = new Gson();
+    private final Path directory;
+    private final boolean enabled;
+    private final long maxFileBytes;
+    private final int retainFiles;
+    private final HytaleLogger logger;
+    private final Ring ring = new Ring(RING_CAPACITY);
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-audit");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+    private volatile boolean accepting;
+    private volatile int segment;
+
+    // Audit thread only, after start().
+    private final Map<UUID, List<Long>> activeIndex = new HashMap<>();
+    private final List<AuditEntry> drained = new ArrayList<>(WRITE_BATCH);
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    private FileChannel out;
+    private long outSize;
+
+    public TagAuditLog(Path directory, boolean enabled, long maxFileBytes, int retainFiles, HytaleLogger logger) {
+        this.directory = directory;
+        this.enabled = enabled;
+        this.maxFileBytes = maxFileBytes;
+        this.retainFiles = retainFiles;
+        this.logger = logger;
+    }
+
+    /**
+     * Opens the newest segment, re-indexing it from the log, and indexes any finished segment whose index is missing.
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            logger.atSevere().withCause(e).log("Failed to open the audit log in %s; admin tag changes will not be recorded.", directory);
+            closeQuietly();
+            return;
+        }
+        accepting = true;
+        executor.scheduleWithFixedDelay(this::drainQuietly, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues an entry without ever blocking, since it is called on the tag writer. If the buffer is full because
+     * the disk fell far behind, the entry is dropped and counted instead.
+     */
+    public void record(String actor, String action, UUID player, String playerName, String tag, String detail) {
+        if (!accepting) {
+            return;
+        }
+        if (!ring.offer(new AuditEntry(System.currentTimeMillis(), actor, action, player, playerName, tag, detail))) {
+            dropped.increment();
+            return;
+        }
+        recorded.increment();
+        // A burst such as a bulk grant is written as it arrives rather than waiting for the next tick.
+        if (ring.size() >= RING_CAPACITY / 2 && drainRequested.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    drainRequested.set(false);
+                    drainQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                drainRequested.set(false);
+            }
+        }
+    }
+
+    /**
+     * The player's most recent {@code limit} entries, newest first, including ones still buffered.
+     */
+    public CompletableFuture<List<AuditEntry>> history(UUID playerId, int limit) {
+        if (!accepting) {
+            return CompletableFuture.failedFuture(new IllegalStateException("The audit log is disabled."));
+        }
+        CompletableFuture<List<AuditEntry>> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    drain();
+                    result.complete(readHistory(playerId, limit));
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    public AuditStats getStats() {
+        return new AuditStats(accepting, recorded.sum(), written.sum(), dropped.sum(), ring.size(), segment);
+    }
+
+    /**
+     * Stops taking entries and writes what is still buffered.
+     */
+    public void shutdown() {
+        if (!accepting) {
+            executor.shutdownNow();
+            return;
+        }
+        accepting = false;
+        executor.execute(() -> {
+            drainQuietly();
+            closeQuietly();
+        });
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.atWarning().log("Audit log did not finish writing within 5s");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> existing = segments();
+        int active = existing.isEmpty() ? 1 : existing.getLast();
+        for (int number : existing) {
+            if (number != active && !Files.exists(indexFile(number))) {
+                writeIndex(indexFile(number), scan(logFile(number)).index());
+                logger.atInfo().log("Rebuilt missing audit index for %s", logFile(number).getFileName());
+            }
+        }
+
+        // The active segment may have grown after any index was written, so it is always re-indexed from the log.
+        Files.deleteIfExists(indexFile(active));
+        Scan scan = scan(logFile(active));
+        activeIndex.putAll(scan.index());
+        segment = active;
+        out = FileChannel.open(logFile(active), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // Drops a line cut short by a crash, so the next entry starts on a line of its own.
+        out.truncate(scan.validLength());
+        out.position(scan.validLength());
+        outSize = scan.validLength();
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (IOException | RuntimeException e) {
+            logger.atSevere().withCause(e).log("Failed to write the audit log");
+        }
+    }
+
+    private void drain() throws IOException {
+        while (ring.drainTo(drained, WRITE_BATCH) > 0) {
+            try {
+                write(drained);
+            } catch (IOException | RuntimeException e) {
+                dropped.add(drained.size());
+                throw e;
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    private void write(List<AuditEntry> entries) throws IOException {
+        long[] offsets = new long[entries.size()];
+        int chunkStart = 0;
+        batch.reset();
+        for (int i = 0; i < entries.size(); i++) {
+            byte[] line = (gson.toJson(entries.get(i)) + "\n").getBytes(StandardCharsets.UTF_8);
+            if (outSize + batch.size() + line.length > maxFileBytes && outSize + batch.size() > 0) {
+                writeChunk(entries, offsets, chunkStart, i);
+                rotate();
+                chunkStart = i;
+            }
+            offsets[i] = outSize + batch.size();
+            batch.write(line, 0, line.length);
+        }
+        writeChunk(entries, offsets, chunkStart, entries.size());
+        out.force(false);
+    }
+
+    private void writeChunk(List<AuditEntry> entries, long[] offsets, int from, int to) throws IOException {
+        if (batch.size() == 0) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(batch.toByteArray());
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        outSize += batch.size();
+        batch.reset();
+        written.add(to - from);
+        for (int i = from; i < to; i++) {
+            UUID player = entries.get(i).player();
+            if (player != null) {
+                activeIndex.computeIfAbsent(player, ignored -> new ArrayList<>()).add(offsets[i]);
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        out.force(false);
+        out.close();
+        writeIndex(indexFile(segment), activeIndex);
+        activeIndex.clear();
+        segment++;
+        out = FileChannel.open(logFile(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        outSize = out.size();
+
+        for (int number : segments()) {
+            if (number <= segment - retainFiles) {
+                Files.deleteIfExists(indexFile(number));
+                Files.deleteIfExists(logFile(number));
+            }
+        }
+    }
+
+    private List<AuditEntry> readHistory(UUID playerId, int limit) throws IOException {
+        List<AuditEntry> entries = new ArrayList<>();
+        collect(logFile(segment), activeIndex.getOrDefault(playerId, List.of()), entries, limit);
+        List<Integer> finished = segments();
+        for (int i = finished.size() - 1; i >= 0 && entries.size() < limit; i--) {
+            int number = finished.get(i);
+            if (number < segment) {
+                collect(logFile(number), indexedOffsets(number, playerId), entries, limit);
+            }
+        }
+        return entries;
+    }
+
+    private void collect(Path log, List<Long> offsets, List<AuditEntry> into, int limit) throws IOException {
+        if (offsets.isEmpty()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            for (int i = offsets.size() - 1; i >= 0 && into.size() < limit; i--) {
+                AuditEntry entry = readLine(channel, offsets.get(i), buffer, line);
+                if (entry != null) {
+                    into.add(entry);
+                }
+            }
+        }
+    }
+
+    private AuditEntry readLine(FileChannel channel, long offset, ByteBuffer buffer, ByteArrayOutputStream line) throws IOException {
+        line.reset();
+        long position = offset;
+        while (line.size() < MAX_LINE_BYTES) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return null;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    return parse(line);
+                }
+                line.write(b);
+            }
+            position += read;
+        }
+        return null;
+    }
+
+    /**
+     * Offsets of the player's entries in a finished segment, from its index. A missing or damaged index is rebuilt.
+     */
+    private List<Long> indexedOffsets(int number, UUID playerId) throws IOException {
+        Path index = indexFile(number);
+        if (Files.exists(index)) {
+            try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int count = channel.size() >= INDEX_HEADER_BYTES ? map.getInt(0) : -1;
+                if (count >= 0 && channel.size() == INDEX_HEADER_BYTES + (long) count * INDEX_ENTRY_BYTES) {
+                    return search(map, count, playerId);
+                }
+            }
+            logger.atWarning().log("Audit index %s is damaged; rebuilding it", index.getFileName());
+        }
+        Map<UUID, List<Long>> rebuilt = scan(logFile(number)).index();
+        writeIndex(index, rebuilt);
+        return rebuilt.getOrDefault(playerId, List.of());
+    }
+
+    private static List<Long> search(ByteBuffer map, int count, UUID playerId) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareAt(map, mid, playerId) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        List<Long> offsets = new ArrayList<>();
+        for (int i = low; i < count && compareAt(map, i, playerId) == 0; i++) {
+            offsets.add(map.getLong(INDEX_HEADER_BYTES + i * INDEX_ENTRY_BYTES + 16));
+        }
+        return offsets;
+    }
+
+    // Same order as UUID.compareTo, which the index is sorted by.
+    private static int compareAt(ByteBuffer map, int entry, UUID playerId) {
+        int position = INDEX_HEADER_BYTES + entry * INDEX_ENTRY_BYTES;
+        int most = Long.compare(map.getLong(position), playerId.getMostSignificantBits());
+        return most != 0 ? most : Long.compare(map.getLong(position + 8), playerId.getLeastSignificantBits());
+    }
+
+    private void writeIndex(Path index, Map<UUID, List<Long>> offsets) throws IOException {
+        List<UUID> players = new ArrayList<>(offsets.keySet());
+        Collections.sort(players);
+        int count = 0;
+        for (List<Long> playerOffsets : offsets.values()) {
+            count += playerOffsets.size();
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(INDEX_HEADER_BYTES + count * INDEX_ENTRY_BYTES);
+        bytes.putInt(count);
+        for (UUID player : players) {
+            for (long offset : offsets.get(player)) {
+                bytes.putLong(player.getMostSignificantBits()).putLong(player.getLeastSignificantBits()).putLong(offset);
+            }
+        }
+        bytes.flip();
+
+        Path temp = index.resolveSibling(index.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Scan scan(Path log) throws IOException {
+        Map<UUID, List<Long>> index = new HashMap<>();
+        if (!Files.exists(log)) {
+            return new Scan(index, 0);
+        }
+        long position = 0;
+        long lineStart = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(log), 1 << 16)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) >= 0) {
+                position++;
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                AuditEntry entry = parse(line);
+                if (entry != null && entry.player() != null) {
+                    index.computeIfAbsent(entry.player(), ignored -> new ArrayList<>()).add(lineStart);
+                }
+                line.reset();
+                lineStart = position;
+            }
+        }
+        return new Scan(index, lineStart);
+    }
+
+    private AuditEntry parse(ByteArrayOutputStream line) {
+        try {
+            return gson.fromJson(line.toString(StandardCharsets.UTF_8), AuditEntry.class);
+        } catch (JsonParseException e) {
+            return null;
+        }
+    }
+
+    private List<Integer> segments() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "audit-*.log")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Integer.parseInt(matcher.group(1)));
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path logFile(int number) {
+        return directory.resolve(String.format(Locale.ROOT, "audit-%06d.log", number));
+    }
+
+    private Path indexFile(int number) {
+        return directory.resolve(String.format(Locale.ROOT, "audit-%06d.idx", number));
+    }
+
+    private void closeQuietly() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.force(false);
+            out.close();
+        } catch (IOException e) {
+            logger.atWarning().withCause(e).log("Failed to close the audit log");
+        }
+        out = null;
+    }
+
+    private record Scan(Map<UUID, List<Long>> index, long validLength) {
+    }
+
+    /**
+     * Bounded multi-producer, single-consumer queue. Producers claim a sequence with a CAS and then publish into its
+     * slot; the consumer stops at the first claimed slot not yet published, so entries come out in claim order.
+     */
+    private static final class Ring {
+        private final AtomicReferenceArray<AuditEntry> slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        Ring(int capacity) {
+            this.slots = new AtomicReferenceArray<>(capacity);
+            this.mask = capacity - 1;
+        }
+
+        boolean offer(AuditEntry entry) {
+            while (true) {
+                long claim = tail.get();
+                if (claim - head >= slots.length()) {
+                    return false;
+                }
+                if (tail.compareAndSet(claim, claim + 1)) {
+                    slots.set((int) claim & mask, entry);
+                    return true;
+                }
+            }
+        }
+
+        // Consumer only. A slot is cleared before head moves past it, so a producer never overwrites an unread entry.
+        int drainTo(List<AuditEntry> into, int max) {
+            long next = head;
+            int count = 0;
+            while (count < max) {
+                int slot = (int) next & mask;
+                AuditEntry entry = slots.get(slot);
+                if (entry == null) {
+                    break;
+                }
+                slots.set(slot, null);
+                into.add(entry);
+                next++;
+                count++;
+            }
+            head = next;
+            return count;
+        }
+
+        long size() {
+            return Math.max(0, tail.get() - head);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.ninja.tags;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the definitions in tags.json. Reloads build a new catalog and swap it in whole.
+ */
+final class TagCatalog {
+    static final TagCatalog EMPTY = new TagCatalog(new LinkedHashMap<>(), new TagOrdinals(), null);
+
+    private final Map<String, TagDefinition> tagsById;
+    private final TagDefinition[] tagsByOrdinal;
+    private final TagText[] textsByOrdinal;
+    private final TagSet defined;
+    private final TagSearchIndex searchIndex;
+    private final int[] ruledOrdinals;
+    private final TagEntitlement[] rules;
+
+    /**
+     * @param previous the catalog being replaced, whose compiled text and search index entries are reused for unchanged tags
+     */
+    TagCatalog(LinkedHashMap<String, TagDefinition> tagsById, TagOrdinals ordinals, TagCatalog previous) {
+        this.tagsById = Collections.unmodifiableMap(new LinkedHashMap<>(tagsById));
+        int maxOrdinal = -1;
+        for (String tagId : tagsById.keySet()) {
+            maxOrdinal = Math.max(maxOrdinal, ordinals.intern(tagId));
+        }
+        this.tagsByOrdinal = new TagDefinition[maxOrdinal + 1];
+        this.textsByOrdinal = new TagText[maxOrdinal + 1];
+        int[] definedOrdinals = new int[tagsById.size()];
+        List<TagDefinition> ruled = new ArrayList<>();
+        int index = 0;
+        for (TagDefinition tag : tagsById.values()) {
+            int ordinal = ordinals.find(tag.id());
+            tagsByOrdinal[ordinal] = tag;
+            if (tag.entitlement() != null) {
+                ruled.add(tag);
+            }
+            TagText reused = previous != null && tag.equals(previous.get(ordinal)) ? previous.textsByOrdinal[ordinal] : null;
+            textsByOrdinal[ordinal] = reused != null ? reused : TagText.compile(tag);
+            definedOrdinals[index++] = ordinal;
+        }
+        this.defined = TagSet.of(definedOrdinals);
+        this.ruledOrdinals = new int[ruled.size()];
+        this.rules = new TagEntitlement[ruled.size()];
+        for (int i = 0; i < ruled.size(); i++) {
+            ruledOrdinals[i] = ordinals.find(ruled.get(i).id());
+            rules[i] = ruled.get(i).entitlement();
+        }
+        this.searchIndex = TagSearchIndex.build(tagsById.values(), ordinals, previous == null ? null : previous.searchIndex);
+    }
+
+    TagDefinition get(String tagId) {
+        return tagId == null ? null : tagsById.get(tagId);
+    }
+
+    TagDefinition get(int ordinal) {
+        return ordinal >= 0 && ordinal < tagsByOrdinal.length ? tagsByOrdinal[ordinal] : null;
+    }
+
+    TagText text(int ordinal) {
+        TagText text = ordinal >= 0 && ordinal < textsByOrdinal.length ? textsByOrdinal[ordinal] : null;
+        return text == null ? TagText.EMPTY : text;
+    }
+
+    /**
+     * Ordinals of every tag defined in this catalog, for masking out owned tags that were removed from tags.json.
+     */
+    TagSet defined() {
+        return defined;
+    }
+
+    boolean hasEntitlementRules() {
+        return rules.length > 0;
+    }
+
+    /**
+     * Ordinals of the tags whose entitlement rule {@code subject} matches.
+     */
+    TagSet entitled(PermissionSubject subject) {
+        int[] matched = new int[rules.length];
+        int count = 0;
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i].matches(subject)) {
+                matched[count++] = ruledOrdinals[i];
+            }
+        }
+        return count == 0 ? TagSet.EMPTY : TagSet.of(Arrays.copyOf(matched, count));
+    }
+
+    /**
+     * Returns up to {@code limit} definitions matching {@code query}, best match first.
+     */
+    List<TagDefinition> search(String query, int limit) {
+        List<TagDefinition> result = new ArrayList<>();
+        for (int ordinal : searchIndex.search(query, limit)) {
+            result.add(tagsByOrdinal[ordinal]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ordinals of every definition matching {@code query}.
+     */
+    TagSet match(String query) {
+        return TagSet.of(searchIndex.search(query, Integer.MAX_VALUE));
+    }
+
+    int size() {
+        return tagsById.size();
+    }
+
+    Collection<TagDefinition> all() {
+        return tagsById.values();
+    }
+}
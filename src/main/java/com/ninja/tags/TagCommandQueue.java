@@ -0,0 +1,273 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.command.system.CommandSender;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single writer for player tag state. Grants, revokes, equips and de-equips are submitted as commands and
+ * applied one at a time on the "ninjatags-writer" thread; results are completed on the caller's executor.
+ * A player's commands wait behind their in-flight suffix write, and consecutive equips and de-equips waiting
+ * there collapse into the last one, so a burst of clicks costs a single LuckPerms write.
+ */
+final class TagCommandQueue {
+    private final TagRepository tagRepository;
+    private final TagEquipper tagEquipper;
+    private final HytaleLogger logger;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Writer thread only.
+    private final Map<UUID, PlayerCommands> players = new HashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    TagCommandQueue(TagRepository tagRepository, TagEquipper tagEquipper, HytaleLogger logger) {
+        this.tagRepository = tagRepository;
+        this.tagEquipper = tagEquipper;
+        this.logger = logger;
+    }
+
+    CompletableFuture<Boolean> equip(UUID playerId, String tagId, CommandSender feedbackTarget, Executor callbackExecutor) {
+        return submit(new Command(Kind.EQUIP, playerId, tagId, feedbackTarget, callbackExecutor));
+    }
+
+    CompletableFuture<Boolean> deEquip(UUID playerId, CommandSender feedbackTarget, Executor callbackExecutor) {
+        return submit(new Command(Kind.DE_EQUIP, playerId, null, feedbackTarget, callbackExecutor));
+    }
+
+    /**
+     * Completes with whether the player did not already own the tag.
+     */
+    CompletableFuture<Boolean> grant(UUID playerId, String tagId, Executor callbackExecutor) {
+        return submit(new Command(Kind.GRANT, playerId, tagId, null, callbackExecutor));
+    }
+
+    /**
+     * Completes with whether the player owned the tag. An equipped tag the player is no longer entitled to is
+     * unequipped as well.
+     */
+    CompletableFuture<Boolean> revoke(UUID playerId, String tagId, Executor callbackExecutor) {
+        return submit(new Command(Kind.REVOKE, playerId, tagId, null, callbackExecutor));
+    }
+
+    /**
+     * Rewrites the player's suffix from their equipped tag, in order with their equips and de-equips, so a
+     * reconcile never lands after a newer equip. Completes on the writer once the write finished.
+     */
+    CompletableFuture<Boolean> refreshSuffix(UUID playerId) {
+        return submit(new Command(Kind.REFRESH, playerId, null, null, Runnable::run));
+    }
+
+    /**
+     * Runs {@code batch} on the writer, between commands, for changes that touch many players at once.
+     * It must not wait on anything that waits on the writer.
+     */
+    <T> CompletableFuture<T> call(Callable<T> batch) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            writer.execute(() -> {
+                try {
+                    result.complete(batch.call());
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Unequips {@code tagId} if it is equipped and the player neither owns it nor is entitled to it.
+     * Writer thread only; for batches passed to {@link #call}.
+     */
+    void unequipIfLost(UUID playerId, String tagId) {
+        if (tagId.equals(tagRepository.getEquippedTag(playerId)) && !tagRepository.playerHasTag(playerId, tagId)) {
+            tagEquipper.unequipLost(playerId);
+            queueRefresh(playerId);
+        }
+    }
+
+    /**
+     * Unequips the player's tag if they are no longer entitled to it, for example after a LuckPerms group change.
+     * Writer thread only; for batches passed to {@link #call}.
+     */
+    void dropUnavailable(UUID playerId) {
+        if (tagEquipper.dropUnavailable(playerId)) {
+            queueRefresh(playerId);
+        }
+    }
+
+    CommandQueueStats getStats() {
+        return new CommandQueueStats(submitted.sum(), coalesced.sum());
+    }
+
+    /**
+     * Stops taking commands and waits briefly for queued ones, so their changes reach the repository before it
+     * shuts down. Suffix writes still in flight afterwards are settled by the next reconcile.
+     */
+    void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.atWarning().log("Tag writer did not finish queued commands within 5s");
+                writer.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.shutdownNow();
+        }
+    }
+
+    private CompletableFuture<Boolean> submit(Command command) {
+        submitted.increment();
+        try {
+            writer.execute(() -> enqueue(command));
+        } catch (RejectedExecutionException e) {
+            command.result.completeExceptionally(e);
+        }
+        return command.result;
+    }
+
+    // Clears the suffix of a tag unequipped on the writer, queued so it cannot race the player's next equip.
+    private void queueRefresh(UUID playerId) {
+        refreshSuffix(playerId).whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.atWarning().withCause(error).log("Failed to clear the suffix of %s after losing their tag", playerId);
+            }
+        });
+    }
+
+    private void enqueue(Command command) {
+        PlayerCommands queue = players.computeIfAbsent(command.playerId, PlayerCommands::new);
+        queue.pending.addLast(command);
+        drain(queue);
+    }
+
+    private void drain(PlayerCommands queue) {
+        while (!queue.busy) {
+            Command command = queue.pending.pollFirst();
+            if (command == null) {
+                players.remove(queue.playerId);
+                return;
+            }
+
+            if (command.kind == Kind.GRANT || command.kind == Kind.REVOKE) {
+                try {
+                    complete(List.of(command), applyOwnership(command), null);
+                } catch (RuntimeException e) {
+                    logger.atSevere().withCause(e).log("Failed to %s tag %s for %s", command.kind, command.tagId, command.playerId);
+                    complete(List.of(command), null, e);
+                }
+                continue;
+            }
+
+            List<Command> batch = new ArrayList<>();
+            batch.add(command);
+            while (command.isSuffixChange() && queue.pending.peekFirst() != null && queue.pending.peekFirst().isSuffixChange()) {
+                batch.add(queue.pending.pollFirst());
+                coalesced.increment();
+            }
+            Command last = batch.getLast();
+            queue.busy = true;
+            CompletableFuture<Boolean> change = switch (last.kind) {
+                case EQUIP -> tagEquipper.equip(last.playerId, last.tagId, last.feedbackTarget, writer);
+                case DE_EQUIP -> tagEquipper.deEquip(last.playerId, last.feedbackTarget, writer);
+                default -> tagEquipper.rewriteSuffix(last.playerId).thenApply(ignored -> true);
+            };
+            // Always resumed as a new writer task, so an equip that finishes immediately does not recurse into drain.
+            change.whenCompleteAsync((changed, error) -> {
+                queue.busy = false;
+                complete(batch, changed, error);
+                drain(queue);
+            }, writer);
+            return;
+        }
+    }
+
+    private boolean applyOwnership(Command command) {
+        boolean changed;
+        if (command.kind == Kind.GRANT) {
+            changed = tagRepository.grantTag(command.playerId, command.tagId);
+        } else {
+            changed = tagRepository.revokeTag(command.playerId, command.tagId);
+            unequipIfLost(command.playerId, command.tagId);
+        }
+        tagRepository.save();
+        return changed;
+    }
+
+    private static void complete(List<Command> commands, Boolean changed, Throwable error) {
+        for (Command command : commands) {
+            Runnable completion = error == null
+                    ? () -> command.result.complete(changed)
+                    : () -> command.result.completeExceptionally(error);
+            try {
+                command.callbackExecutor.execute(completion);
+            } catch (RejectedExecutionException e) {
+                // The caller's world is gone; nobody is waiting on its thread any more.
+                completion.run();
+            }
+        }
+    }
+
+    private enum Kind {
+        GRANT,
+        REVOKE,
+        EQUIP,
+        DE_EQUIP,
+        REFRESH
+    }
+
+    private static final class Command {
+        final Kind kind;
+        final UUID playerId;
+        final String tagId;
+        final CommandSender feedbackTarget;
+        final Executor callbackExecutor;
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        Command(Kind kind, UUID playerId, String tagId, CommandSender feedbackTarget, Executor callbackExecutor) {
+            this.kind = kind;
+            this.playerId = playerId;
+            this.tagId = tagId;
+            this.feedbackTarget = feedbackTarget;
+            this.callbackExecutor = callbackExecutor;
+        }
+
+        boolean isSuffixChange() {
+            return kind == Kind.EQUIP || kind == Kind.DE_EQUIP;
+        }
+    }
+
+    private static final class PlayerCommands {
+        final UUID playerId;
+        final Deque<Command> pending = new ArrayDeque<>();
+        boolean busy;
+
+        PlayerCommands(UUID playerId) {
+            this.playerId = playerId;
+        }
+    }
+}
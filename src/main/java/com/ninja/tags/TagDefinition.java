@@ -1,6 +1,13 @@
 package com.ninja.tags;
 
-public record TagDefinition(String id, String displayName, String hexColor, String text) {
+/**
+ * @param entitlement optional rule granting the tag to every matching player without an explicit grant
+ */
+public record TagDefinition(String id, String displayName, String hexColor, String text, TagEntitlement entitlement) {
+    public TagDefinition(String id, String displayName, String hexColor, String text) {
+        this(id, displayName, hexColor, text, null);
+    }
+
     public String formattedSuffix() {
         return "&" + hexColor + text;
     }
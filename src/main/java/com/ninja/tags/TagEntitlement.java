@@ -0,0 +1,35 @@
+package com.ninja.tags;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entitlement rule from tags.json. A player matching any listed LuckPerms group, permission node or meta
+ * value is entitled to the tag.
+ */
+public record TagEntitlement(List<String> groups, List<String> permissions, Map<String, String> meta) {
+    boolean matches(PermissionSubject subject) {
+        if (groups != null) {
+            for (String group : groups) {
+                if (group != null && subject.inGroup(group)) {
+                    return true;
+                }
+            }
+        }
+        if (permissions != null) {
+            for (String permission : permissions) {
+                if (permission != null && subject.hasPermission(permission)) {
+                    return true;
+                }
+            }
+        }
+        if (meta != null) {
+            for (Map.Entry<String, String> entry : meta.entrySet()) {
+                if (entry.getValue() != null && entry.getValue().equalsIgnoreCase(subject.meta(entry.getKey()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,75 @@
+package com.ninja.tags;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-player cache of the tags granted by entitlement rules. A player's set is evaluated once per catalog and
+ * kept until {@link #invalidate} reports that their permission data changed, so menu renders and ownership
+ * checks never go back to the permission backend.
+ */
+final class TagEntitlements {
+    private final EntitlementSource source;
+    private final Map<UUID, Cached> cache = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final AtomicLong invalidationGeneration = new AtomicLong();
+
+    TagEntitlements(EntitlementSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Tags the player is entitled to under {@code catalog}'s rules, or null while their permission data is not
+     * loaded. Nothing is cached in that case, so the next call tries again.
+     */
+    TagSet entitled(UUID playerId, TagCatalog catalog) {
+        if (!catalog.hasEntitlementRules()) {
+            return TagSet.EMPTY;
+        }
+        Cached cached = cache.get(playerId);
+        if (cached != null && cached.catalog == catalog) {
+            hits.increment();
+            return cached.tags;
+        }
+        // Evaluated outside the map, so permission lookups never hold a ConcurrentHashMap bin lock. An invalidation
+        // that lands meanwhile bumps the generation, and the result is then taken back out, so the invalidation wins.
+        long generation = invalidationGeneration.get();
+        PermissionSubject subject = source.subject(playerId);
+        if (subject == null) {
+            return null;
+        }
+        evaluations.increment();
+        Cached evaluated = new Cached(catalog, catalog.entitled(subject));
+        boolean published = cached == null
+                ? cache.putIfAbsent(playerId, evaluated) == null
+                : cache.replace(playerId, cached, evaluated);
+        if (published && invalidationGeneration.get() != generation) {
+            cache.remove(playerId, evaluated);
+        }
+        return evaluated.tags;
+    }
+
+    void invalidate(UUID playerId) {
+        // Bumped before the removal: a result published earlier is removed here, one published later sees the bump.
+        invalidationGeneration.incrementAndGet();
+        if (cache.remove(playerId) != null) {
+            invalidations.increment();
+        }
+    }
+
+    void forget(UUID playerId) {
+        cache.remove(playerId);
+    }
+
+    EntitlementStats stats() {
+        return new EntitlementStats(true, cache.size(), hits.sum(), evaluations.sum(), invalidations.sum());
+    }
+
+    private record Cached(TagCatalog catalog, TagSet tags) {
+    }
+}
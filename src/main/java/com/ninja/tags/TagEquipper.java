@@ -0,0 +1,148 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.command.system.CommandSender;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Equips and de-equips tags: writes the suffix first, then records the change in the repository on
+ * {@code callbackExecutor} once the write succeeded. Failed writes re-assert the previous suffix before the
+ * returned future completes.
+ */
+final class TagEquipper {
+    private final TagRepository tagRepository;
+    private final LuckPermsTagService luckPermsTagService;
+    private final TagMetrics metrics;
+    private final HytaleLogger logger;
+
+    TagEquipper(TagRepository tagRepository, LuckPermsTagService luckPermsTagService, TagMetrics metrics, HytaleLogger logger) {
+        this.tagRepository = tagRepository;
+        this.luckPermsTagService = luckPermsTagService;
+        this.metrics = metrics;
+        this.logger = logger;
+    }
+
+    CompletableFuture<Boolean> equip(UUID playerId, String tagId, CommandSender feedbackTarget, Executor callbackExecutor) {
+        if (!tagRepository.playerHasTag(playerId, tagId)) {
+            feedbackTarget.sendMessage(Message.raw("You do not own tag id: " + tagId));
+            return CompletableFuture.completedFuture(false);
+        }
+
+        TagDefinition tag = tagRepository.getTag(tagId);
+        if (tag == null) {
+            feedbackTarget.sendMessage(Message.raw("Unknown tag id: " + tagId));
+            return CompletableFuture.completedFuture(false);
+        }
+
+        TagOperationEvent timing = metrics.start(TagMetrics.Operation.EQUIP);
+        return luckPermsTagService.applyManagedSuffixAsync(playerId, tag.formattedSuffix())
+                .handleAsync((ignored, error) -> {
+                    if (error != null) {
+                        metrics.stop(timing, playerId, tagId, false);
+                        logger.atWarning().withCause(error).log("Failed to apply suffix for %s (tag=%s)", playerId, tagId);
+                        feedbackTarget.sendMessage(Message.raw(LuckPermsTagService.describeFailure(error)));
+                        return restoreSuffix(playerId);
+                    }
+                    if (!tagRepository.playerHasTag(playerId, tagId)) {
+                        metrics.stop(timing, playerId, tagId, false);
+                        feedbackTarget.sendMessage(Message.raw("You no longer own tag id: " + tagId));
+                        // Revoked while LuckPerms was busy; put the suffix back in line with the repository.
+                        return restoreSuffix(playerId);
+                    }
+
+                    tagRepository.setEquippedTag(playerId, tagId);
+                    tagRepository.save();
+                    metrics.stop(timing, playerId, tagId, true);
+                    feedbackTarget.sendMessage(
+                            Message.join(
+                                    Message.raw("Equipped tag: "),
+                                    tagRepository.getTagText(tagId).toMessage()
+                            )
+                    );
+                    return CompletableFuture.completedFuture(true);
+                }, callbackExecutor)
+                .thenCompose(Function.identity());
+    }
+
+    CompletableFuture<Boolean> deEquip(UUID playerId, CommandSender feedbackTarget, Executor callbackExecutor) {
+        if (tagRepository.getEquippedTag(playerId) == null) {
+            feedbackTarget.sendMessage(Message.raw("You do not have a tag equipped."));
+            return CompletableFuture.completedFuture(false);
+        }
+
+        TagOperationEvent timing = metrics.start(TagMetrics.Operation.UNEQUIP);
+        return luckPermsTagService.clearManagedSuffixAsync(playerId)
+                .handleAsync((ignored, error) -> {
+                    if (error != null) {
+                        metrics.stop(timing, playerId, null, false);
+                        logger.atWarning().withCause(error).log("Failed to clear suffix for %s", playerId);
+                        feedbackTarget.sendMessage(Message.raw(LuckPermsTagService.describeFailure(error)));
+                        return restoreSuffix(playerId);
+                    }
+
+                    tagRepository.setEquippedTag(playerId, null);
+                    tagRepository.save();
+                    metrics.stop(timing, playerId, null, true);
+                    feedbackTarget.sendMessage(Message.raw("Tag de-equipped."));
+                    return CompletableFuture.completedFuture(true);
+                }, callbackExecutor)
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Clears the equipped tag once the player neither owns it nor is entitled to it any more, for example after
+     * leaving the LuckPerms group its rule names. Returns whether it did; the caller queues the suffix refresh.
+     */
+    boolean dropUnavailable(UUID playerId) {
+        int equipped = tagRepository.getEquippedOrdinal(playerId);
+        if (equipped < 0 || tagRepository.getOwnedTagSet(playerId).contains(equipped)) {
+            return false;
+        }
+        TagSet entitled = tagRepository.getEntitledTagSet(playerId);
+        if (entitled == null || entitled.contains(equipped)) {
+            return false;
+        }
+
+        String tagId = tagRepository.getEquippedTag(playerId);
+        unequipLost(playerId);
+        logger.atFine().log("Unequipped %s from %s: no longer entitled", tagId, playerId);
+        return true;
+    }
+
+    /**
+     * Unequips a tag the player has just lost. Only the repository changes here; the suffix is cleared by a
+     * refresh the caller queues behind the player's other suffix writes.
+     */
+    void unequipLost(UUID playerId) {
+        tagRepository.setEquippedTag(playerId, null);
+        tagRepository.save();
+    }
+
+    /**
+     * Re-asserts whatever the repository says is equipped, since a failed or timed-out write may still land later.
+     * Completes with false once the restore finished, so the queue holds the player's slot until then.
+     */
+    private CompletableFuture<Boolean> restoreSuffix(UUID playerId) {
+        return rewriteSuffix(playerId).handle((ignored, error) -> {
+            if (error != null) {
+                logger.atWarning().withCause(error).log("Failed to restore suffix for %s after an unsuccessful change", playerId);
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Writes the suffix of the player's equipped tag, or clears it if nothing is equipped.
+     */
+    CompletableFuture<Void> rewriteSuffix(UUID playerId) {
+        TagDefinition equipped = tagRepository.getTag(tagRepository.getEquippedTag(playerId));
+        return equipped == null
+                ? luckPermsTagService.clearManagedSuffixAsync(playerId)
+                : luckPermsTagService.applyManagedSuffixAsync(playerId, equipped.formattedSuffix());
+    }
+}
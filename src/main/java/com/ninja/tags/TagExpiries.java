@@ -0,0 +1,380 @@
+package com.ninja.tags;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timed grants. Deadlines sit in a min-heap and one thread sleeps until the earliest, so expiring never scans
+ * players. Replaced or cancelled deadlines are left in the heap and skipped when they surface. Deadlines are
+ * kept in tag-expiries.json; after a restart, everything already due is revoked in batches of {@code batchSize}.
+ * Revocations run on the {@link TagCommandQueue} writer; this class's lock is never held while waiting on it.
+ */
+public class TagExpiries {
+    private static final Type EXPIRIES_TYPE = new TypeToken<Map<String, Map<String, Long>>>() {
+    }.getType();
+    // Re-checks the wall clock at least this often, in case it jumped while we slept.
+    private static final long MAX_SLEEP_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MIN_STALE_BEFORE_REBUILD = 1024;
+    // After a failed batch, its entries are retried no sooner than this, so a stopped writer is not spun on.
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Path file;
+    private final TagRepository tagRepository;
+    private final SuffixReconciler suffixReconciler;
+    private final TagCommandQueue commands;
+    private final TagAuditLog auditLog;
+    private final int batchSize;
+    private final HytaleLogger logger;
+    private final Object fileLock = new Object();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this. deadlines is authoritative; queue entries that disagree with it are stale.
+    private final Map<UUID, Map<String, Long>> deadlines = new HashMap<>();
+    private final PriorityQueue<Expiry> queue = new PriorityQueue<>(Comparator.comparingLong(Expiry::expiresAtMillis));
+    private int pending;
+    private int staleEntries;
+    private long expired;
+    private ScheduledFuture<?> wakeup;
+    private long wakeupAtMillis = Long.MAX_VALUE;
+    private long retryAtMillis;
+
+    TagExpiries(Path file, TagRepository tagRepository, SuffixReconciler suffixReconciler, TagCommandQueue commands,
+                TagAuditLog auditLog, int batchSize, HytaleLogger logger) {
+        this.file = file;
+        this.tagRepository = tagRepository;
+        this.suffixReconciler = suffixReconciler;
+        this.commands = commands;
+        this.auditLog = auditLog;
+        this.batchSize = batchSize;
+        this.logger = logger;
+    }
+
+    /**
+     * Reads tag-expiries.json and starts expiring. Deadlines that passed while the server was down expire right away.
+     */
+    public void start() {
+        Map<String, Map<String, Long>> stored = Map.of();
+        if (Files.exists(file)) {
+            try (Reader in = Files.newBufferedReader(file)) {
+                Map<String, Map<String, Long>> parsed = gson.fromJson(in, EXPIRIES_TYPE);
+                stored = parsed == null ? Map.of() : parsed;
+            } catch (IOException | JsonParseException e) {
+                logger.atSevere().withCause(e).log("Failed to read %s; timed tags will not expire until it is fixed.", file);
+                return;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        int loaded;
+        int overdue = 0;
+        synchronized (this) {
+            for (Map.Entry<String, Map<String, Long>> player : stored.entrySet()) {
+                UUID playerId;
+                try {
+                    playerId = UUID.fromString(player.getKey());
+                } catch (IllegalArgumentException e) {
+                    logger.atWarning().log("Skipping expiries for invalid player id %s in %s", player.getKey(), file);
+                    continue;
+                }
+                for (Map.Entry<String, Long> tag : player.getValue().entrySet()) {
+                    if (tag.getKey() != null && tag.getValue() != null) {
+                        put(playerId, tag.getKey(), tag.getValue());
+                        overdue += tag.getValue() <= now ? 1 : 0;
+                    }
+                }
+            }
+            loaded = pending;
+            scheduleWakeup();
+        }
+        if (loaded > 0) {
+            logger.atInfo().log("Loaded %s pending tag expiries (%s already due).", loaded, overdue);
+        }
+    }
+
+    /**
+     * Sets when the player's tag expires, replacing any earlier deadline. Written to disk before returning,
+     * so call it before granting the tag.
+     */
+    public void schedule(UUID playerId, String tagId, long expiresAtMillis) throws IOException {
+        synchronized (this) {
+            put(playerId, tagId, expiresAtMillis);
+            scheduleWakeup();
+        }
+        persist();
+    }
+
+    /**
+     * Makes the tag permanent again, or forgets it after a revoke. Returns true if it had a deadline.
+     */
+    public boolean cancel(UUID playerId, String tagId) {
+        return cancel(List.of(playerId), tagId) > 0;
+    }
+
+    /**
+     * Cancels the deadline of {@code tagId} for each player, writing the file once. Returns how many were cancelled.
+     */
+    public int cancel(Collection<UUID> playerIds, String tagId) {
+        int cancelled = 0;
+        synchronized (this) {
+            for (UUID playerId : playerIds) {
+                cancelled += remove(playerId, tagId) ? 1 : 0;
+            }
+        }
+        if (cancelled > 0) {
+            try {
+                persist();
+            } catch (IOException e) {
+                logger.atSevere().withCause(e).log("Failed to save %s after cancelling %s expiries", file, cancelled);
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Epoch milliseconds at which the player's tag expires, or null if it is permanent or not owned.
+     */
+    public synchronized Long expiresAt(UUID playerId, String tagId) {
+        Map<String, Long> tags = deadlines.get(playerId);
+        return tags == null ? null : tags.get(tagId);
+    }
+
+    public synchronized ExpiryStats getStats() {
+        Expiry next = queue.peek();
+        while (next != null && !isCurrent(next)) {
+            queue.poll();
+            staleEntries--;
+            next = queue.peek();
+        }
+        return new ExpiryStats(pending, expired, next == null ? -1 : next.expiresAtMillis());
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void expireDue() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            wakeup = null;
+            wakeupAtMillis = Long.MAX_VALUE;
+        }
+        // Due entries leave the heap but keep their deadline until the writer revokes them, so a regrant or
+        // cancel that lands in between is still seen there. The lock is never held while waiting on the writer.
+        // The writer takes each entry off due as it settles it; whatever is left after a failure goes back on the heap.
+        Deque<Expiry> due = new ArrayDeque<>();
+        List<UUID> unequipped = new ArrayList<>();
+        boolean failed = false;
+        try {
+            synchronized (this) {
+                while (due.size() < batchSize) {
+                    Expiry head = queue.peek();
+                    if (head == null || head.expiresAtMillis() > now) {
+                        break;
+                    }
+                    queue.poll();
+                    if (isCurrent(head)) {
+                        due.add(head);
+                    } else {
+                        staleEntries--;
+                    }
+                }
+            }
+            if (due.isEmpty()) {
+                return;
+            }
+            int revoked = commands.call(() -> revoke(due, unequipped)).join();
+            refreshSuffixes(unequipped);
+
+            // Revocations are stored before the deadlines are dropped from disk; a crash in between only repeats them.
+            tagRepository.flush();
+            persist();
+            if (revoked > 0) {
+                logger.atInfo().log("Expired %s timed tags.", revoked);
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            logger.atSevere().withCause(e).log("Failed to process tag expiries");
+            // Players the writer unequipped before it failed still need their suffix cleared.
+            refreshSuffixes(unequipped);
+        } finally {
+            synchronized (this) {
+                requeue(due);
+                retryAtMillis = failed ? System.currentTimeMillis() + RETRY_DELAY_MILLIS : 0;
+                scheduleWakeup();
+            }
+        }
+    }
+
+    // Runs on the writer. An expiry whose deadline was replaced or cancelled since it was taken off the heap is skipped.
+    // Returns the number of tags revoked and adds the players whose equipped tag went with them to unequipped.
+    private int revoke(Deque<Expiry> due, List<UUID> unequipped) {
+        int revoked = 0;
+        Expiry expiry;
+        while ((expiry = due.peekFirst()) != null) {
+            synchronized (this) {
+                due.pollFirst();
+                boolean current = isCurrent(expiry);
+                if (current) {
+                    remove(expiry.playerId(), expiry.tagId());
+                    expired++;
+                }
+                // Its heap entry is already gone, whether or not it was still current.
+                staleEntries--;
+                if (!current) {
+                    continue;
+                }
+            }
+            if (!tagRepository.revokeTag(expiry.playerId(), expiry.tagId())) {
+                continue;
+            }
+            revoked++;
+            auditLog.record(TagAuditLog.SYSTEM_ACTOR, "expire", expiry.playerId(), null, expiry.tagId(), null);
+            if (expiry.tagId().equals(tagRepository.getEquippedTag(expiry.playerId()))
+                    && !tagRepository.playerHasTag(expiry.playerId(), expiry.tagId())) {
+                tagRepository.setEquippedTag(expiry.playerId(), null);
+                unequipped.add(expiry.playerId());
+            }
+        }
+        return revoked;
+    }
+
+    // Puts back entries the writer never reached, for example because it rejected the batch.
+    private void requeue(Deque<Expiry> unprocessed) {
+        for (Expiry expiry : unprocessed) {
+            if (isCurrent(expiry)) {
+                queue.add(expiry);
+            } else {
+                // Replaced or cancelled meanwhile, which counted the heap entry we had already taken off as stale.
+                staleEntries--;
+            }
+        }
+        unprocessed.clear();
+    }
+
+    // Clears unequipped, so a failure after the refresh was queued does not queue it again.
+    private void refreshSuffixes(List<UUID> unequipped) {
+        List<UUID> players = List.copyOf(unequipped);
+        unequipped.clear();
+        suffixReconciler.refreshAsync(players, message -> logger.atInfo().log("%s", message));
+    }
+
+    private void put(UUID playerId, String tagId, long expiresAtMillis) {
+        Long previous = deadlines.computeIfAbsent(playerId, ignored -> new HashMap<>()).put(tagId, expiresAtMillis);
+        if (previous == null) {
+            pending++;
+        } else {
+            staleEntries++;
+        }
+        queue.add(new Expiry(playerId, tagId, expiresAtMillis));
+        rebuildIfMostlyStale();
+    }
+
+    private boolean remove(UUID playerId, String tagId) {
+        Map<String, Long> tags = deadlines.get(playerId);
+        if (tags == null || tags.remove(tagId) == null) {
+            return false;
+        }
+        if (tags.isEmpty()) {
+            deadlines.remove(playerId);
+        }
+        pending--;
+        staleEntries++;
+        rebuildIfMostlyStale();
+        return true;
+    }
+
+    private boolean isCurrent(Expiry expiry) {
+        Map<String, Long> tags = deadlines.get(expiry.playerId());
+        Long current = tags == null ? null : tags.get(expiry.tagId());
+        return current != null && current == expiry.expiresAtMillis();
+    }
+
+    private void rebuildIfMostlyStale() {
+        if (staleEntries < MIN_STALE_BEFORE_REBUILD || staleEntries < pending) {
+            return;
+        }
+        queue.clear();
+        for (Map.Entry<UUID, Map<String, Long>> player : deadlines.entrySet()) {
+            for (Map.Entry<String, Long> tag : player.getValue().entrySet()) {
+                queue.add(new Expiry(player.getKey(), tag.getKey(), tag.getValue()));
+            }
+        }
+        staleEntries = 0;
+    }
+
+    private void scheduleWakeup() {
+        Expiry head = queue.peek();
+        if (head == null || executor.isShutdown()) {
+            return;
+        }
+        long wakeAt = Math.max(retryAtMillis, Math.min(head.expiresAtMillis(), System.currentTimeMillis() + MAX_SLEEP_MILLIS));
+        if (wakeup != null) {
+            if (wakeupAtMillis <= wakeAt) {
+                return;
+            }
+            wakeup.cancel(false);
+        }
+        wakeupAtMillis = wakeAt;
+        wakeup = executor.schedule(this::expireDue, Math.max(0, wakeAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void persist() throws IOException {
+        synchronized (fileLock) {
+            Map<String, Map<String, Long>> snapshot = new LinkedHashMap<>();
+            synchronized (this) {
+                for (Map.Entry<UUID, Map<String, Long>> player : deadlines.entrySet()) {
+                    snapshot.put(player.getKey().toString(), new LinkedHashMap<>(player.getValue()));
+                }
+            }
+
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 Writer out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+                gson.toJson(snapshot, EXPIRIES_TYPE, out);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private record Expiry(UUID playerId, String tagId, long expiresAtMillis) {
+    }
+
+}
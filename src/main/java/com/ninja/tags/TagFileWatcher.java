@@ -0,0 +1,101 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a single file and runs a callback once it has been quiet for the debounce interval, so the
+ * burst of events an editor produces while saving results in one reload. The callback runs on the
+ * watcher's own scheduler thread.
+ */
+final class TagFileWatcher {
+    private final Path file;
+    private final long debounceMillis;
+    private final Runnable onChange;
+    private final HytaleLogger logger;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-tags-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private WatchService watchService;
+    private Thread watchThread;
+    private ScheduledFuture<?> pendingReload;
+
+    TagFileWatcher(Path file, long debounceMillis, Runnable onChange, HytaleLogger logger) {
+        this.file = file.toAbsolutePath();
+        this.debounceMillis = debounceMillis;
+        this.onChange = onChange;
+        this.logger = logger;
+    }
+
+    void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        // Editors often save by writing a temp file and renaming it over the original, which shows up as a create.
+        file.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watchThread = new Thread(this::watch, "ninjatags-tags-watcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        logger.atInfo().log("Watching %s for changes (debounce %sms).", file, debounceMillis);
+    }
+
+    void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.atWarning().withCause(e).log("Failed to close watch service for %s", file);
+            }
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void watch() {
+        Path fileName = file.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    touched |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+                }
+                if (touched) {
+                    scheduleReload();
+                }
+                if (!key.reset()) {
+                    logger.atWarning().log("Stopped watching %s: directory is no longer accessible.", file);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down.
+        }
+    }
+
+    private synchronized void scheduleReload() {
+        if (pendingReload != null) {
+            pendingReload.cancel(false);
+        }
+        pendingReload = scheduler.schedule(() -> {
+            try {
+                onChange.run();
+            } catch (Exception e) {
+                logger.atSevere().withCause(e).log("Failed to apply changes to %s", file);
+            }
+        }, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+}
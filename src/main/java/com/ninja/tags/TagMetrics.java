@@ -0,0 +1,83 @@
+package com.ninja.tags;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and failure counts per tag operation. Each timed operation is also a
+ * {@link TagOperationEvent}, so a JFR recording shows the same operations on a timeline.
+ */
+final class TagMetrics {
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] failures = new LongAdder[Operation.values().length];
+    private final long createdNanos = System.nanoTime();
+
+    TagMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+            failures[i] = new LongAdder();
+        }
+    }
+
+    TagOperationEvent start(Operation operation) {
+        TagOperationEvent event = new TagOperationEvent();
+        event.kind = operation;
+        event.startedNanos = System.nanoTime();
+        event.begin();
+        return event;
+    }
+
+    void stop(TagOperationEvent event, boolean success) {
+        stop(event, null, null, success);
+    }
+
+    void stop(TagOperationEvent event, UUID playerId, String tagId, boolean success) {
+        histograms[event.kind.ordinal()].record(System.nanoTime() - event.startedNanos);
+        if (!success) {
+            failures[event.kind.ordinal()].increment();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = event.kind.label();
+            event.player = playerId == null ? null : playerId.toString();
+            event.tag = tagId;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    LatencyHistogram.Snapshot snapshot(Operation operation) {
+        return histograms[operation.ordinal()].snapshot();
+    }
+
+    long failures(Operation operation) {
+        return failures[operation.ordinal()].sum();
+    }
+
+    double uptimeSeconds() {
+        return (System.nanoTime() - createdNanos) / 1_000_000_000.0;
+    }
+
+    enum Operation {
+        EQUIP("equip"),
+        UNEQUIP("de-equip"),
+        LUCKPERMS_WRITE("luckperms write"),
+        SAVE("save"),
+        LOAD("load"),
+        PLAYER_LOAD("player load"),
+        RELOAD("reload"),
+        PAGE_BUILD("menu build"),
+        PAGE_UPDATE("menu update"),
+        PREFETCH("prefetch");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        String label() {
+            return label;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.ninja.tags;
+
+import java.util.UUID;
+
+record TagMutation(UUID playerId, Type type, String tagId) {
+    enum Type {
+        GRANT,
+        REVOKE,
+        EQUIP
+    }
+}
@@ -0,0 +1,33 @@
+package com.ninja.tags;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one timed tag operation. The event's duration is the operation's latency.
+ */
+@Name("com.ninja.tags.TagOperation")
+@Label("Tag Operation")
+@Category("NinjaTags")
+@Description("An equip, de-equip, LuckPerms write, save, load, reload or tags menu build")
+@StackTrace(false)
+final class TagOperationEvent extends jdk.jfr.Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Player")
+    String player;
+
+    @Label("Tag")
+    String tag;
+
+    @Label("Success")
+    boolean success;
+
+    // Not recorded; used by TagMetrics to time the operation for its own histograms.
+    transient TagMetrics.Operation kind;
+    transient long startedNanos;
+}
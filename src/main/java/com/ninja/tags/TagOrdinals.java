@@ -0,0 +1,57 @@
+package com.ninja.tags;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns tag ids to small integer ordinals. Ordinals are never reused or reassigned, so they stay
+ * valid across reloads of tags.json even when definitions are removed and re-added.
+ */
+final class TagOrdinals {
+    private final Map<String, Integer> ordinalsById = new ConcurrentHashMap<>();
+    private volatile String[] idsByOrdinal = new String[16];
+    private int size;
+
+    int find(String tagId) {
+        if (tagId == null) {
+            return -1;
+        }
+        Integer ordinal = ordinalsById.get(tagId);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    int intern(String tagId) {
+        int existing = find(tagId);
+        if (existing >= 0) {
+            return existing;
+        }
+        synchronized (this) {
+            Integer raced = ordinalsById.get(tagId);
+            if (raced != null) {
+                return raced;
+            }
+            int ordinal = size;
+            String[] ids = idsByOrdinal;
+            if (ordinal == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            ids[ordinal] = tagId;
+            idsByOrdinal = ids;
+            size = ordinal + 1;
+            ordinalsById.put(tagId, ordinal);
+            return ordinal;
+        }
+    }
+
+    String id(int ordinal) {
+        String[] ids = idsByOrdinal;
+        return ordinal >= 0 && ordinal < ids.length ? ids[ordinal] : null;
+    }
+
+    int size() {
+        synchronized (this) {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ninja.tags;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Which definitions a tags.json reload added, removed or changed. {@code staleSuffixTags} lists the removed
+ * tags and the changed tags whose LuckPerms suffix is now different.
+ */
+public record TagReload(int tagCount, List<String> added, List<String> removed, List<String> changed, List<String> staleSuffixTags) {
+    static TagReload between(TagCatalog previous, TagCatalog current) {
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        List<String> staleSuffixTags = new ArrayList<>();
+
+        for (TagDefinition tag : current.all()) {
+            TagDefinition before = previous.get(tag.id());
+            if (before == null) {
+                added.add(tag.id());
+            } else if (!before.equals(tag)) {
+                changed.add(tag.id());
+                if (!Objects.equals(before.formattedSuffix(), tag.formattedSuffix())) {
+                    staleSuffixTags.add(tag.id());
+                }
+            }
+        }
+        for (TagDefinition tag : previous.all()) {
+            if (current.get(tag.id()) == null) {
+                removed.add(tag.id());
+                staleSuffixTags.add(tag.id());
+            }
+        }
+        return new TagReload(current.size(), List.copyOf(added), List.copyOf(removed), List.copyOf(changed), List.copyOf(staleSuffixTags));
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    public String summary() {
+        return tagCount + " tags, " + added.size() + " added, " + removed.size() + " removed, " + changed.size() + " changed";
+    }
+}
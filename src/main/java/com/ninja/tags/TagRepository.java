@@ -7,150 +7,580 @@ import com.google.gson.reflect.TypeToken;
 import com.hypixel.hytale.logger.HytaleLogger;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 public class TagRepository {
-    private static final Type PLAYER_DATA_TYPE = new TypeToken<Map<String, PlayerTagData>>() {
-    }.getType();
+    private static final int CHANGE_BATCH = 500;
+    private static final long CHANGE_RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long CHANGE_PRUNE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
+
     private static final Type TAGS_TYPE = new TypeToken<List<TagDefinition>>() {
     }.getType();
 
     private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
     private final Path dataFolder;
     private final Path playerDataFile;
+    private final Path playerDatabaseFile;
+    private final Path playerSnapshotFile;
     private final Path tagDefinitionsFile;
+    private final NinjaTagsConfig config;
     private final HytaleLogger logger;
-
-    private final Map<String, PlayerTagData> players = new LinkedHashMap<>();
-    private final Map<String, TagDefinition> tagsById = new LinkedHashMap<>();
-
-    public TagRepository(Path dataFolder, HytaleLogger logger) {
+    private final TagMetrics metrics;
+
+    private final Map<UUID, PlayerTagData> players = new ConcurrentHashMap<>();
+    // Store reads in progress with lazy loading; other lookups of the same player wait for them.
+    private final Map<UUID, CompletableFuture<PlayerTagData>> loading = new ConcurrentHashMap<>();
+    // Connected players are never evicted. Kept apart from the cache entries, which may not be loaded yet.
+    private final Set<UUID> connected = ConcurrentHashMap.newKeySet();
+    private final TagOrdinals ordinals = new TagOrdinals();
+    private final Deque<TagMutation> pendingMutations = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Object flushLock = new Object();
+    private final Object reloadLock = new Object();
+    private volatile TagCatalog catalog = TagCatalog.EMPTY;
+    private volatile PlayerTagStore store;
+    private volatile WriteBehindFlusher flusher;
+    private volatile boolean lazyLoading;
+    private volatile TagEntitlements entitlements;
+    private ScheduledExecutorService cacheSweeper;
+
+    // Shared store: the poller thread alone reads and writes lastChangeSequence, deferredRefreshes and lastPruneNanos.
+    private final String serverId;
+    private volatile SharedPlayerTagStore sharedStore;
+    private ScheduledExecutorService changePoller;
+    private volatile long lastChangeSequence;
+    private final Set<UUID> deferredRefreshes = new LinkedHashSet<>();
+    private long lastPruneNanos = System.nanoTime();
+    private final LongAdder changePolls = new LongAdder();
+    private final LongAdder remoteChanges = new LongAdder();
+    private final LongAdder refreshedPlayers = new LongAdder();
+    private final LongAdder feedGaps = new LongAdder();
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheEvictions = new LongAdder();
+
+    private long flushCount;
+    private long flushedChanges;
+    private int lastBatchSize;
+    private long lastFlushNanos;
+    private long maxFlushNanos;
+    private long totalFlushNanos;
+
+    public TagRepository(Path dataFolder, NinjaTagsConfig config, TagMetrics metrics, HytaleLogger logger) {
         this.dataFolder = dataFolder;
         this.playerDataFile = dataFolder.resolve("player-tags.json");
+        this.playerDatabaseFile = dataFolder.resolve("player-tags.db");
+        this.playerSnapshotFile = dataFolder.resolve("player-tags.bin");
         this.tagDefinitionsFile = dataFolder.resolve("tags.json");
+        this.config = config;
+        this.metrics = metrics;
         this.logger = logger;
+        this.serverId = config.serverId().isEmpty() ? UUID.randomUUID().toString() : config.serverId();
     }
 
     public synchronized void load() {
+        TagOperationEvent timing = metrics.start(TagMetrics.Operation.LOAD);
+        boolean loaded = false;
         try {
             Files.createDirectories(dataFolder);
             ensureDefaultTagsFile();
 
-            if (Files.exists(playerDataFile)) {
-                try (Reader in = Files.newBufferedReader(playerDataFile)) {
-                    Map<String, PlayerTagData> loaded = gson.fromJson(in, PLAYER_DATA_TYPE);
-                    if (loaded != null) {
-                        players.clear();
-                        players.putAll(loaded);
-                    }
+            if (store == null) {
+                store = openStore();
+            }
+            lazyLoading = config.lazyLoading() && store.loadsPlayersIndividually();
+            if (config.lazyLoading() && !lazyLoading) {
+                logger.atWarning().log("lazyLoading requires sqlite or binary storage; loading all players up front instead.");
+            }
+            sharedStore = store instanceof SharedPlayerTagStore shared && config.sharedStore() ? shared : null;
+            if (config.sharedStore() && sharedStore == null) {
+                logger.atWarning().log("sharedStore requires sqlite storage; this server keeps its own copy of player tags.");
+            }
+            if (sharedStore != null) {
+                // Read before the players, so changes made while they load are picked up by the first poll.
+                lastChangeSequence = sharedStore.latestChange();
+            }
+
+            // Definitions are interned first so ordinals follow tags.json order.
+            catalog = parseTagDefinitionsFile();
+
+            players.clear();
+            pendingMutations.clear();
+            pendingCount.set(0);
+            if (lazyLoading) {
+                startCacheSweeper();
+            } else {
+                for (Map.Entry<UUID, PlayerTagRecord> entry : store.loadAll().entrySet()) {
+                    players.put(entry.getKey(), PlayerTagData.fromRecord(entry.getValue(), ordinals));
                 }
             }
 
-            Map<String, TagDefinition> loadedTagsById = parseTagDefinitionsFile();
-            tagsById.clear();
-            tagsById.putAll(loadedTagsById);
+            if (config.writeBehind() && flusher == null) {
+                flusher = new WriteBehindFlusher(this::flush, config.flushIntervalMillis(), logger);
+                flusher.start();
+            }
+            if (sharedStore != null) {
+                startChangePoller();
+            }
+            loaded = true;
         } catch (Exception e) {
             logger.atSevere().withCause(e).log("Failed to load tag data from %s", tagDefinitionsFile);
+        } finally {
+            metrics.stop(timing, loaded);
         }
     }
 
-    public synchronized int reloadTags() {
-        try {
-            Files.createDirectories(dataFolder);
-            ensureDefaultTagsFile();
+    public int reloadTags() {
+        TagReload reload = reloadTagDefinitions();
+        return reload == null ? -1 : reload.tagCount();
+    }
 
-            Map<String, TagDefinition> loadedTagsById = parseTagDefinitionsFile();
-            tagsById.clear();
-            tagsById.putAll(loadedTagsById);
+    /**
+     * Re-reads tags.json and, if any definition changed, swaps in the new catalog. Returns what changed,
+     * or null if the file could not be read and the previous tags were kept.
+     */
+    public TagReload reloadTagDefinitions() {
+        synchronized (reloadLock) {
+            TagOperationEvent timing = metrics.start(TagMetrics.Operation.RELOAD);
+            try {
+                Files.createDirectories(dataFolder);
+                ensureDefaultTagsFile();
+
+                TagCatalog previous = catalog;
+                TagCatalog reloaded = parseTagDefinitionsFile();
+                TagReload changes = TagReload.between(previous, reloaded);
+                if (!changes.isEmpty()) {
+                    catalog = reloaded;
+                }
 
-            logger.atInfo().log("Reloaded tags from %s (%s tags).", tagDefinitionsFile, tagsById.size());
-            return tagsById.size();
-        } catch (Exception e) {
-            logger.atSevere().withCause(e).log("Failed to reload tags from %s. Keeping previous in-memory tags (%s).", tagDefinitionsFile, tagsById.size());
-            return -1;
+                metrics.stop(timing, true);
+                logger.atInfo().log("Reloaded tags from %s (%s).", tagDefinitionsFile, changes.summary());
+                return changes;
+            } catch (Exception e) {
+                metrics.stop(timing, false);
+                logger.atSevere().withCause(e).log("Failed to reload tags from %s. Keeping previous in-memory tags (%s).", tagDefinitionsFile, catalog.size());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Streams every player's tags in the player-tags.json form, whatever the active storage. With lazy loading
+     * the store is read after a flush, one player at a time where it supports that.
+     */
+    public void forEachPlayer(BiConsumer<UUID, PlayerTagRecord> action) throws IOException {
+        flush();
+        PlayerTagStore activeStore = store;
+        if (lazyLoading && activeStore != null) {
+            activeStore.forEachPlayer(action);
+            return;
+        }
+        // Without lazy loading every player is in memory, which stays authoritative even if the last flush failed.
+        for (Map.Entry<UUID, PlayerTagData> entry : players.entrySet()) {
+            action.accept(entry.getKey(), entry.getValue().toRecord(ordinals));
         }
     }
 
-    public synchronized Path getTagDefinitionsFile() {
+    /**
+     * With lazy loading, persists pending changes and drops the given players from the cache again unless they are
+     * online, so a large import does not keep every player it touched in memory. Does nothing otherwise.
+     */
+    public void release(Collection<UUID> playerIds) {
+        if (!lazyLoading) {
+            return;
+        }
+        flush();
+        for (UUID playerId : playerIds) {
+            PlayerTagData data = players.get(playerId);
+            if (data != null) {
+                evict(playerId, data);
+            }
+        }
+    }
+
+    public Path getTagDefinitionsFile() {
         return tagDefinitionsFile;
     }
 
-    public synchronized int getTagCount() {
-        return tagsById.size();
+    public int getTagCount() {
+        return catalog.size();
     }
 
-    public synchronized void save() {
-        try {
-            Files.createDirectories(dataFolder);
-            try (Writer out = Files.newBufferedWriter(playerDataFile)) {
-                gson.toJson(players, PLAYER_DATA_TYPE, out);
+    public void save() {
+        if (flusher == null) {
+            flush();
+        }
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            PlayerTagStore activeStore = store;
+            if (activeStore == null || pendingMutations.isEmpty()) {
+                return;
             }
-        } catch (IOException e) {
-            logger.atSevere().withCause(e).log("Failed to save tag data");
+
+            List<TagMutation> mutations = new ArrayList<>(pendingCount.get());
+            TagMutation mutation;
+            while ((mutation = pendingMutations.pollFirst()) != null) {
+                mutations.add(mutation);
+            }
+            pendingCount.addAndGet(-mutations.size());
+
+            long started = System.nanoTime();
+            TagOperationEvent timing = metrics.start(TagMetrics.Operation.SAVE);
+            try {
+                Files.createDirectories(dataFolder);
+                activeStore.write(mutations, this::copyPlayers);
+                metrics.stop(timing, true);
+            } catch (IOException e) {
+                metrics.stop(timing, false);
+                for (int i = mutations.size() - 1; i >= 0; i--) {
+                    pendingMutations.addFirst(mutations.get(i));
+                }
+                pendingCount.addAndGet(mutations.size());
+                logger.atSevere().withCause(e).log("Failed to save tag data (%s changes kept pending)", mutations.size());
+                return;
+            }
+            recordFlush(mutations.size(), System.nanoTime() - started);
+            for (TagMutation flushed : mutations) {
+                PlayerTagData data = players.get(flushed.playerId());
+                if (data != null) {
+                    data.pendingWrites.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        WriteBehindFlusher activeFlusher;
+        synchronized (this) {
+            activeFlusher = flusher;
+            flusher = null;
+            if (cacheSweeper != null) {
+                cacheSweeper.shutdownNow();
+                cacheSweeper = null;
+            }
+            if (changePoller != null) {
+                changePoller.shutdownNow();
+                changePoller = null;
+            }
+        }
+        if (activeFlusher != null) {
+            activeFlusher.stop();
+        }
+
+        flush();
+        synchronized (flushLock) {
+            PlayerTagStore closing;
+            synchronized (this) {
+                closing = store;
+                store = null;
+            }
+            // Closed outside the monitor: a store may still need player snapshots while it winds down.
+            if (closing != null) {
+                closing.close();
+            }
+        }
+    }
+
+    public synchronized PersistenceStats getPersistenceStats() {
+        double nanosPerMilli = 1_000_000.0;
+        return new PersistenceStats(
+                flusher != null,
+                pendingCount.get(),
+                flushCount,
+                flushedChanges,
+                lastBatchSize,
+                lastFlushNanos / nanosPerMilli,
+                maxFlushNanos / nanosPerMilli,
+                flushCount == 0 ? 0.0 : totalFlushNanos / nanosPerMilli / flushCount
+        );
+    }
+
+    public CacheStats getCacheStats() {
+        return new CacheStats(lazyLoading, players.size(), cacheHits.sum(), cacheMisses.sum(), cacheEvictions.sum());
+    }
+
+    public SharedStoreStats getSharedStoreStats() {
+        synchronized (deferredRefreshes) {
+            return new SharedStoreStats(sharedStore != null, serverId, lastChangeSequence, changePolls.sum(),
+                    remoteChanges.sum(), refreshedPlayers.sum(), feedGaps.sum(), deferredRefreshes.size());
+        }
+    }
+
+    /**
+     * Lets tags.json entitlement rules grant tags, checked against {@code source}.
+     */
+    public void setEntitlementSource(EntitlementSource source) {
+        entitlements = source == null ? null : new TagEntitlements(source);
+    }
+
+    /**
+     * Drops the player's cached entitlements after their permission data changed.
+     */
+    public void invalidateEntitlements(UUID playerId) {
+        TagEntitlements active = entitlements;
+        if (active != null) {
+            active.invalidate(playerId);
         }
     }
 
-    public synchronized List<String> getOwnedTags(UUID playerId) {
-        PlayerTagData data = players.get(playerId.toString());
-        if (data == null || data.tags == null) {
+    public EntitlementStats getEntitlementStats() {
+        TagEntitlements active = entitlements;
+        return active == null ? EntitlementStats.DISABLED : active.stats();
+    }
+
+    /**
+     * Marks the player connected without loading anything; see {@link #warmPlayer}.
+     */
+    public void playerConnected(UUID playerId) {
+        connected.add(playerId);
+    }
+
+    /**
+     * Loads the player into the cache, and their entitlements if their permission data is available.
+     */
+    public void warmPlayer(UUID playerId) {
+        lookup(playerId);
+        getEntitledTagSet(playerId);
+    }
+
+    public void playerDisconnected(UUID playerId) {
+        connected.remove(playerId);
+        PlayerTagData data = players.get(playerId);
+        if (data != null) {
+            data.lastAccessNanos = System.nanoTime();
+        }
+        TagEntitlements active = entitlements;
+        if (active != null) {
+            active.forget(playerId);
+        }
+    }
+
+    public List<String> getOwnedTags(UUID playerId) {
+        TagSet owned = getOwnedTagSet(playerId);
+        if (owned.isEmpty()) {
             return List.of();
         }
-        return List.copyOf(data.tags);
+        List<String> tagIds = new ArrayList<>(owned.size());
+        for (int ordinal = owned.nextOrdinal(0); ordinal >= 0; ordinal = owned.nextOrdinal(ordinal + 1)) {
+            tagIds.add(ordinals.id(ordinal));
+        }
+        return tagIds;
+    }
+
+    /**
+     * Tags granted explicitly; what is persisted and exported.
+     */
+    public TagSet getOwnedTagSet(UUID playerId) {
+        PlayerTagData data = lookup(playerId);
+        return data == null ? TagSet.EMPTY : data.owned;
+    }
+
+    /**
+     * Tags granted by entitlement rules, or null while the player's permission data is not loaded.
+     */
+    public TagSet getEntitledTagSet(UUID playerId) {
+        TagEntitlements active = entitlements;
+        return active == null ? TagSet.EMPTY : active.entitled(playerId, catalog);
+    }
+
+    /**
+     * Tags the player may equip: owned ones plus those their entitlement rules grant.
+     */
+    public TagSet getAvailableTagSet(UUID playerId) {
+        TagSet entitled = getEntitledTagSet(playerId);
+        TagSet owned = getOwnedTagSet(playerId);
+        return entitled == null ? owned : owned.union(entitled);
     }
 
-    public synchronized boolean playerHasTag(UUID playerId, String tagId) {
-        return getOwnedTags(playerId).contains(tagId);
+    /**
+     * Whether the player owns or is entitled to the tag.
+     */
+    public boolean playerHasTag(UUID playerId, String tagId) {
+        int ordinal = ordinals.find(tagId);
+        return ordinal >= 0 && getAvailableTagSet(playerId).contains(ordinal);
     }
 
-    public synchronized void grantTag(UUID playerId, String tagId) {
-        PlayerTagData data = getOrCreate(playerId);
-        if (!data.tags.contains(tagId)) {
-            data.tags.add(tagId);
+    /**
+     * Returns true if the player did not already own the tag.
+     */
+    public boolean grantTag(UUID playerId, String tagId) {
+        int ordinal = ordinals.intern(tagId);
+        return mutate(playerId, data -> {
+            TagSet updated = data.owned.with(ordinal);
+            if (updated == data.owned) {
+                return null;
+            }
+            data.owned = updated;
+            return new TagMutation(playerId, TagMutation.Type.GRANT, tagId);
+        });
+    }
+
+    /**
+     * Returns true if the player owned the tag.
+     */
+    public boolean revokeTag(UUID playerId, String tagId) {
+        int ordinal = ordinals.find(tagId);
+        if (ordinal < 0) {
+            return false;
         }
+        return mutate(playerId, data -> {
+            TagSet updated = data.owned.without(ordinal);
+            if (updated == data.owned) {
+                return null;
+            }
+            data.owned = updated;
+            return new TagMutation(playerId, TagMutation.Type.REVOKE, tagId);
+        });
     }
 
-    public synchronized void revokeTag(UUID playerId, String tagId) {
-        PlayerTagData data = getOrCreate(playerId);
-        data.tags.remove(tagId);
+    public String getEquippedTag(UUID playerId) {
+        PlayerTagData data = lookup(playerId);
+        return data == null ? null : ordinals.id(data.equippedOrdinal);
     }
 
-    public synchronized String getEquippedTag(UUID playerId) {
-        PlayerTagData data = players.get(playerId.toString());
-        return data == null ? null : data.equippedTag;
+    public int getEquippedOrdinal(UUID playerId) {
+        PlayerTagData data = lookup(playerId);
+        return data == null ? -1 : data.equippedOrdinal;
     }
 
-    public synchronized void setEquippedTag(UUID playerId, String tagId) {
-        PlayerTagData data = getOrCreate(playerId);
-        data.equippedTag = tagId;
+    public void setEquippedTag(UUID playerId, String tagId) {
+        int ordinal = tagId == null ? -1 : ordinals.intern(tagId);
+        mutate(playerId, data -> {
+            data.equippedOrdinal = ordinal;
+            return new TagMutation(playerId, TagMutation.Type.EQUIP, tagId);
+        });
     }
 
-    public synchronized TagDefinition getTag(String tagId) {
-        return tagsById.get(tagId);
+    /**
+     * Returns every player with an equipped tag, including players that are not currently cached.
+     */
+    public Map<UUID, String> getEquippedTags() throws IOException {
+        Map<UUID, String> equipped = new HashMap<>();
+        PlayerTagStore activeStore = store;
+        if (lazyLoading && activeStore != null) {
+            activeStore.forEachEquipped(equipped::put);
+        }
+        // Cached entries may hold changes the store has not seen yet.
+        for (Map.Entry<UUID, PlayerTagData> entry : players.entrySet()) {
+            String tagId = ordinals.id(entry.getValue().equippedOrdinal);
+            if (tagId == null) {
+                equipped.remove(entry.getKey());
+            } else {
+                equipped.put(entry.getKey(), tagId);
+            }
+        }
+        return equipped;
+    }
+
+    /**
+     * Returns every player who owns {@code tagId}, including players that are not currently cached.
+     */
+    public List<UUID> getTagOwners(String tagId) throws IOException {
+        int ordinal = ordinals.find(tagId);
+        if (ordinal < 0) {
+            return List.of();
+        }
+        Set<UUID> owners = new LinkedHashSet<>();
+        PlayerTagStore activeStore = store;
+        if (lazyLoading && activeStore != null) {
+            activeStore.forEachOwner(tagId, owners::add);
+        }
+        // Cached entries may hold changes the store has not seen yet.
+        for (Map.Entry<UUID, PlayerTagData> entry : players.entrySet()) {
+            if (entry.getValue().owned.contains(ordinal)) {
+                owners.add(entry.getKey());
+            } else {
+                owners.remove(entry.getKey());
+            }
+        }
+        return new ArrayList<>(owners);
+    }
+
+    public TagDefinition getTag(String tagId) {
+        return catalog.get(tagId);
+    }
+
+    public TagDefinition getTag(int ordinal) {
+        return catalog.get(ordinal);
     }
 
-    private synchronized Map<String, TagDefinition> parseTagDefinitionsFile() throws IOException {
+    /**
+     * Ordinals of every tag currently defined in tags.json.
+     */
+    public TagSet getDefinedTags() {
+        return catalog.defined();
+    }
+
+    public Collection<TagDefinition> getAllTags() {
+        return catalog.all();
+    }
+
+    /**
+     * Searches tag ids, display names and text by prefix, falling back to fuzzy matches. Best match first.
+     */
+    public List<TagDefinition> searchTags(String query, int limit) {
+        return catalog.search(query, limit);
+    }
+
+    /**
+     * Returns the ordinals of every tag matching {@code query}, for filtering an owned {@link TagSet}.
+     */
+    public TagSet matchTags(String query) {
+        return catalog.match(query);
+    }
+
+    public TagText getTagText(int ordinal) {
+        return catalog.text(ordinal);
+    }
+
+    public TagText getTagText(String tagId) {
+        return catalog.text(ordinals.find(tagId));
+    }
+
+    private TagCatalog parseTagDefinitionsFile() throws IOException {
         try (Reader in = Files.newBufferedReader(tagDefinitionsFile)) {
             List<TagDefinition> loadedTags = gson.fromJson(in, TAGS_TYPE);
             if (loadedTags == null) {
                 throw new IllegalArgumentException("tags.json parsed as null");
             }
 
-            Map<String, TagDefinition> loadedTagsById = new LinkedHashMap<>();
+            LinkedHashMap<String, TagDefinition> loadedTagsById = new LinkedHashMap<>();
             for (TagDefinition tag : loadedTags) {
                 validateTag(tag);
                 loadedTagsById.put(tag.id(), tag);
             }
-            return loadedTagsById;
+            return new TagCatalog(loadedTagsById, ordinals, catalog);
         } catch (JsonParseException e) {
             throw new IllegalArgumentException("Invalid JSON in tags file: " + e.getMessage(), e);
         }
@@ -187,28 +617,379 @@ public class TagRepository {
         }
     }
 
-    private PlayerTagData getOrCreate(UUID playerId) {
-        return players.computeIfAbsent(playerId.toString(), ignored -> new PlayerTagData());
+    private PlayerTagStore openStore() throws IOException {
+        if (config.storageMode() == NinjaTagsConfig.StorageMode.BINARY) {
+            return openBinaryStore();
+        }
+        if (config.storageMode() != NinjaTagsConfig.StorageMode.SQLITE) {
+            JsonPlayerTagStore jsonStore = new JsonPlayerTagStore(playerDataFile, gson, logger);
+            if (config.journal()) {
+                return new JournaledPlayerTagStore(jsonStore, playerDataFile, config.journalCompactThreshold(), logger);
+            }
+            foldLeftoverJournal(jsonStore);
+            return jsonStore;
+        }
+
+        if (config.sharedStore()) {
+            return openSharedStore();
+        }
+        SqlitePlayerTagStore sqliteStore = SqlitePlayerTagStore.open(playerDatabaseFile);
+        try {
+            if (!sqliteStore.isMigrated()) {
+                Map<UUID, PlayerTagRecord> legacy = new JsonPlayerTagStore(playerDataFile, gson, logger).loadAll();
+                sqliteStore.importAll(legacy);
+                if (Files.exists(playerDataFile)) {
+                    Files.move(playerDataFile, dataFolder.resolve("player-tags.json.migrated"), StandardCopyOption.REPLACE_EXISTING);
+                }
+                logger.atInfo().log("Migrated %s players from %s into %s.", legacy.size(), playerDataFile, playerDatabaseFile);
+            }
+        } catch (IOException e) {
+            sqliteStore.close();
+            throw e;
+        }
+        return sqliteStore;
     }
 
-    private static final class PlayerTagData {
-        private List<String> tags = new ArrayList<>();
-        private String equippedTag;
+    private SqlitePlayerTagStore openSharedStore() throws IOException {
+        Path databaseFile = config.sharedStoreFile().isEmpty() ? playerDatabaseFile : dataFolder.resolve(config.sharedStoreFile());
+        Files.createDirectories(databaseFile.toAbsolutePath().getParent());
+        SqlitePlayerTagStore sqliteStore = SqlitePlayerTagStore.openShared(databaseFile, serverId);
+        try {
+            // Every server merges its own leftover JSON data, even into a database another server already migrated.
+            if (!sqliteStore.isMigrated() || Files.exists(playerDataFile)) {
+                Map<UUID, PlayerTagRecord> legacy = new JsonPlayerTagStore(playerDataFile, gson, logger).loadAll();
+                sqliteStore.importAll(legacy);
+                if (Files.exists(playerDataFile)) {
+                    Files.move(playerDataFile, dataFolder.resolve("player-tags.json.migrated"), StandardCopyOption.REPLACE_EXISTING);
+                }
+                logger.atInfo().log("Merged %s players from %s into shared store %s.", legacy.size(), playerDataFile, databaseFile);
+            }
+        } catch (IOException e) {
+            sqliteStore.close();
+            throw e;
+        }
+        logger.atInfo().log("Using shared tag store %s as server %s.", databaseFile, serverId);
+        return sqliteStore;
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(tags, equippedTag);
+    private BinaryPlayerTagStore openBinaryStore() throws IOException {
+        boolean firstStart = !BinaryPlayerTagStore.exists(playerSnapshotFile);
+        BinaryPlayerTagStore binaryStore = BinaryPlayerTagStore.open(playerSnapshotFile);
+        try {
+            if (firstStart && Files.exists(playerDataFile)) {
+                JsonPlayerTagStore jsonStore = new JsonPlayerTagStore(playerDataFile, gson, logger);
+                foldLeftoverJournal(jsonStore);
+                Map<UUID, PlayerTagRecord> legacy = jsonStore.loadAll();
+                binaryStore.importAll(legacy);
+                Files.move(playerDataFile, dataFolder.resolve("player-tags.json.migrated"), StandardCopyOption.REPLACE_EXISTING);
+                logger.atInfo().log("Migrated %s players from %s into %s.", legacy.size(), playerDataFile, playerSnapshotFile);
+            }
+        } catch (IOException e) {
+            binaryStore.close();
+            throw e;
         }
+        return binaryStore;
+    }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
+    private boolean mutate(UUID playerId, Function<PlayerTagData, TagMutation> change) {
+        while (true) {
+            PlayerTagData data;
+            try {
+                data = getOrCreate(playerId);
+            } catch (UncheckedIOException e) {
+                logger.atSevere().withCause(e.getCause()).log("Failed to load tag data for player %s; change not applied", playerId);
+                return false;
+            }
+            synchronized (data) {
+                if (data.evicted) {
+                    // Lost a race with the cache sweeper; the next lookup reloads the player.
+                    continue;
+                }
+                data.lastAccessNanos = System.nanoTime();
+                TagMutation mutation = change.apply(data);
+                if (mutation == null) {
+                    return false;
+                }
+                data.pendingWrites.incrementAndGet();
+                data.localChanges++;
+                recordMutation(mutation);
                 return true;
             }
-            if (!(obj instanceof PlayerTagData other)) {
+        }
+    }
+
+    private void recordMutation(TagMutation mutation) {
+        pendingMutations.addLast(mutation);
+        int pending = pendingCount.incrementAndGet();
+        WriteBehindFlusher activeFlusher = flusher;
+        if (activeFlusher != null && pending >= config.flushMaxPendingChanges()) {
+            activeFlusher.trigger();
+        }
+    }
+
+    private synchronized void recordFlush(int batchSize, long elapsedNanos) {
+        flushCount++;
+        flushedChanges += batchSize;
+        lastBatchSize = batchSize;
+        lastFlushNanos = elapsedNanos;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsedNanos);
+        totalFlushNanos += elapsedNanos;
+    }
+
+    private void foldLeftoverJournal(JsonPlayerTagStore jsonStore) throws IOException {
+        Path journalFile = JournaledPlayerTagStore.journalFileFor(playerDataFile);
+        if (!Files.exists(journalFile) && !Files.exists(journalFile.resolveSibling(journalFile.getFileName() + ".compacting"))) {
+            return;
+        }
+
+        // Journaling was switched off; fold what it recorded into the snapshot before ignoring it.
+        try (JournaledPlayerTagStore journaled = new JournaledPlayerTagStore(jsonStore, playerDataFile, Integer.MAX_VALUE, logger)) {
+            jsonStore.writeSnapshot(journaled.loadAll());
+        }
+        Files.deleteIfExists(journalFile);
+        logger.atInfo().log("Folded leftover %s into %s.", journalFile, playerDataFile);
+    }
+
+    private Map<UUID, PlayerTagRecord> copyPlayers() {
+        Map<UUID, PlayerTagRecord> copy = new HashMap<>(players.size() * 2);
+        for (Map.Entry<UUID, PlayerTagData> entry : players.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().toRecord(ordinals));
+        }
+        return copy;
+    }
+
+    private PlayerTagData lookup(UUID playerId) {
+        PlayerTagData data = players.get(playerId);
+        if (!lazyLoading) {
+            return data;
+        }
+        if (data != null) {
+            cacheHits.increment();
+            data.lastAccessNanos = System.nanoTime();
+            return data;
+        }
+        try {
+            return getOrCreate(playerId);
+        } catch (UncheckedIOException e) {
+            logger.atSevere().withCause(e.getCause()).log("Failed to load tag data for player %s", playerId);
+            return null;
+        }
+    }
+
+    private PlayerTagData getOrCreate(UUID playerId) {
+        if (!lazyLoading) {
+            return players.computeIfAbsent(playerId, ignored -> new PlayerTagData());
+        }
+        // Read outside the map, so store I/O never holds a ConcurrentHashMap bin lock.
+        CompletableFuture<PlayerTagData> load = new CompletableFuture<>();
+        CompletableFuture<PlayerTagData> running = loading.putIfAbsent(playerId, load);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            // Another load may have finished between the caller's cache miss and claiming this one.
+            PlayerTagData data = players.get(playerId);
+            if (data == null) {
+                PlayerTagData loaded = loadPlayer(playerId);
+                data = players.putIfAbsent(playerId, loaded);
+                if (data == null) {
+                    data = loaded;
+                }
+            }
+            load.complete(data);
+            return data;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(playerId, load);
+        }
+    }
+
+    private PlayerTagData loadPlayer(UUID playerId) {
+        cacheMisses.increment();
+        PlayerTagStore activeStore = store;
+        if (activeStore == null) {
+            return new PlayerTagData();
+        }
+        TagOperationEvent timing = metrics.start(TagMetrics.Operation.PLAYER_LOAD);
+        try {
+            PlayerTagData data = PlayerTagData.fromRecord(activeStore.load(playerId), ordinals);
+            metrics.stop(timing, playerId, null, true);
+            return data;
+        } catch (IOException e) {
+            metrics.stop(timing, playerId, null, false);
+            // Not cached as empty: a later lookup retries instead of hiding the player's tags.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void startCacheSweeper() {
+        if (cacheSweeper != null) {
+            return;
+        }
+        cacheSweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ninjatags-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cacheSweeper.scheduleWithFixedDelay(this::sweepCache, 30, 30, TimeUnit.SECONDS);
+    }
+
+    private void sweepCache() {
+        try {
+            long now = System.nanoTime();
+            long idleNanos = TimeUnit.SECONDS.toNanos(config.cacheIdleSeconds());
+            List<Map.Entry<UUID, PlayerTagData>> candidates = new ArrayList<>();
+            for (Map.Entry<UUID, PlayerTagData> entry : players.entrySet()) {
+                PlayerTagData data = entry.getValue();
+                if (connected.contains(entry.getKey()) || data.pendingWrites.get() > 0) {
+                    continue;
+                }
+                if (now - data.lastAccessNanos >= idleNanos) {
+                    evict(entry.getKey(), data);
+                } else {
+                    candidates.add(entry);
+                }
+            }
+
+            int overflow = players.size() - config.cacheMaxPlayers();
+            if (overflow > 0) {
+                candidates.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccessNanos));
+                for (int i = 0; i < candidates.size() && overflow > 0; i++) {
+                    if (evict(candidates.get(i).getKey(), candidates.get(i).getValue())) {
+                        overflow--;
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.atSevere().withCause(e).log("Player tag cache sweep failed");
+        }
+    }
+
+    private void startChangePoller() {
+        if (changePoller != null) {
+            return;
+        }
+        changePoller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ninjatags-shared-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.sharedPollMillis();
+        changePoller.scheduleWithFixedDelay(this::pollChanges, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void pollChanges() {
+        SharedPlayerTagStore shared = sharedStore;
+        if (shared == null) {
+            return;
+        }
+        try {
+            changePolls.increment();
+            Set<UUID> changed;
+            synchronized (deferredRefreshes) {
+                changed = new LinkedHashSet<>(deferredRefreshes);
+                deferredRefreshes.clear();
+            }
+
+            List<PlayerChange> changes;
+            do {
+                changes = shared.changesSince(lastChangeSequence, CHANGE_BATCH);
+                if (!changes.isEmpty() && changes.getFirst().sequence() > lastChangeSequence + 1) {
+                    // Entries we never saw were pruned (this server was paused too long): any cached player may be stale.
+                    feedGaps.increment();
+                    changed.addAll(players.keySet());
+                }
+                for (PlayerChange change : changes) {
+                    lastChangeSequence = change.sequence();
+                    if (serverId.equals(change.serverId())) {
+                        continue;
+                    }
+                    remoteChanges.increment();
+                    PlayerTagData data = players.get(change.playerId());
+                    if (data == null ? lazyLoading : data.storeVersion >= change.version()) {
+                        continue;
+                    }
+                    changed.add(change.playerId());
+                }
+            } while (changes.size() == CHANGE_BATCH);
+
+            for (UUID playerId : changed) {
+                refreshPlayer(shared, playerId);
+            }
+
+            long now = System.nanoTime();
+            if (now - lastPruneNanos >= CHANGE_PRUNE_INTERVAL_NANOS) {
+                lastPruneNanos = now;
+                shared.pruneChanges(System.currentTimeMillis() - CHANGE_RETENTION_MILLIS);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.atWarning().withCause(e).log("Failed to poll the shared tag store for changes");
+        }
+    }
+
+    /**
+     * Re-reads a player another server changed and swaps the new state into the cached entry in place, so online
+     * players are refreshed too. Players with local changes not yet flushed are retried on the next poll.
+     */
+    private void refreshPlayer(SharedPlayerTagStore shared, UUID playerId) throws IOException {
+        PlayerTagData data = players.get(playerId);
+        if (data == null && lazyLoading) {
+            // Not cached: the next lookup loads the current state.
+            return;
+        }
+        long seenChanges;
+        if (data == null) {
+            seenChanges = 0;
+        } else {
+            synchronized (data) {
+                seenChanges = data.localChanges;
+            }
+        }
+
+        PlayerTagRecord record = shared.load(playerId);
+        PlayerTagData fresh = PlayerTagData.fromRecord(record, ordinals);
+        if (data == null) {
+            data = players.putIfAbsent(playerId, fresh);
+            if (data == null) {
+                refreshedPlayers.increment();
+                return;
+            }
+        }
+
+        synchronized (data) {
+            if (data.evicted || record.version <= data.storeVersion) {
+                return;
+            }
+            if (data.pendingWrites.get() > 0 || data.localChanges != seenChanges) {
+                synchronized (deferredRefreshes) {
+                    deferredRefreshes.add(playerId);
+                }
+                return;
+            }
+            data.owned = fresh.owned;
+            data.equippedOrdinal = fresh.equippedOrdinal;
+            data.storeVersion = record.version;
+        }
+        refreshedPlayers.increment();
+    }
+
+    private boolean evict(UUID playerId, PlayerTagData data) {
+        synchronized (data) {
+            if (connected.contains(playerId) || data.pendingWrites.get() > 0) {
                 return false;
             }
-            return Objects.equals(this.tags, other.tags) && Objects.equals(this.equippedTag, other.equippedTag);
+            data.evicted = true;
+            if (players.remove(playerId, data)) {
+                cacheEvictions.increment();
+                return true;
+            }
+            return false;
         }
     }
 }
@@ -0,0 +1,266 @@
+package com.ninja.tags;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable search index over tag ids, display names and text. Prefix queries binary-search a sorted token
+ * array; fuzzy queries gather candidates from bigram postings and confirm them with a bounded edit distance.
+ * A rebuild reuses the tokens of every definition that did not change since the previous index.
+ */
+final class TagSearchIndex {
+    static final TagSearchIndex EMPTY = new TagSearchIndex(new HashMap<>(), 0, new String[0], new int[0][], new HashMap<>());
+
+    private static final int FUZZY_MIN_QUERY_LENGTH = 4;
+    private static final char WORD_START = '\u0000';
+    private static final int SCORE_EXACT = 0;
+    private static final int SCORE_PREFIX = 1;
+    private static final int SCORE_FUZZY = 2;
+
+    private final Map<TagDefinition, String[]> tokensByTag;
+    private final int ordinalBound;
+    // Distinct tokens in sorted order, each with the ordinals of the tags that contain it.
+    private final String[] tokens;
+    private final int[][] tokenPostings;
+    // Bigram, including one for the token start, to the indexes of the distinct tokens that contain it.
+    private final Map<Integer, int[]> bigramPostings;
+
+    private TagSearchIndex(Map<TagDefinition, String[]> tokensByTag, int ordinalBound, String[] tokens,
+                           int[][] tokenPostings, Map<Integer, int[]> bigramPostings) {
+        this.tokensByTag = tokensByTag;
+        this.ordinalBound = ordinalBound;
+        this.tokens = tokens;
+        this.tokenPostings = tokenPostings;
+        this.bigramPostings = bigramPostings;
+    }
+
+    static TagSearchIndex build(Collection<TagDefinition> tags, TagOrdinals ordinals, TagSearchIndex previous) {
+        Map<TagDefinition, String[]> tokensByTag = new HashMap<>(tags.size() * 2);
+        Map<String, IntList> ordinalsByToken = new HashMap<>();
+        int ordinalBound = 0;
+
+        for (TagDefinition tag : tags) {
+            String[] tagTokens = previous == null ? null : previous.tokensByTag.get(tag);
+            if (tagTokens == null) {
+                tagTokens = tokenize(tag);
+            }
+            tokensByTag.put(tag, tagTokens);
+
+            int ordinal = ordinals.find(tag.id());
+            ordinalBound = Math.max(ordinalBound, ordinal + 1);
+            for (String token : tagTokens) {
+                ordinalsByToken.computeIfAbsent(token, ignored -> new IntList()).add(ordinal);
+            }
+        }
+
+        String[] tokens = ordinalsByToken.keySet().toArray(new String[0]);
+        Arrays.sort(tokens);
+        int[][] tokenPostings = new int[tokens.length][];
+        Map<Integer, IntList> bigrams = new HashMap<>();
+        for (int index = 0; index < tokens.length; index++) {
+            String token = tokens[index];
+            tokenPostings[index] = ordinalsByToken.get(token).toArray();
+            for (int i = 0; i < token.length(); i++) {
+                IntList posting = bigrams.computeIfAbsent(bigram(token, i), ignored -> new IntList());
+                if (posting.size == 0 || posting.values[posting.size - 1] != index) {
+                    posting.add(index);
+                }
+            }
+        }
+
+        Map<Integer, int[]> bigramPostings = new HashMap<>(bigrams.size() * 2);
+        for (Map.Entry<Integer, IntList> entry : bigrams.entrySet()) {
+            bigramPostings.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return new TagSearchIndex(tokensByTag, ordinalBound, tokens, tokenPostings, bigramPostings);
+    }
+
+    /**
+     * Returns ordinals matching {@code query}, best first: exact token matches, then prefix matches, then
+     * fuzzy matches by edit distance. Ties keep catalog ordinal order.
+     */
+    int[] search(String query, int limit) {
+        // Multi-word queries match the joined form every name is also indexed under.
+        String normalized = normalize(query).replace(" ", "");
+        if (normalized.isEmpty() || limit <= 0 || ordinalBound == 0) {
+            return new int[0];
+        }
+
+        int[] scores = new int[ordinalBound];
+        Arrays.fill(scores, Integer.MAX_VALUE);
+        int matched = 0;
+
+        for (int index = lowerBound(normalized); index < tokens.length && tokens[index].startsWith(normalized); index++) {
+            int score = tokens[index].length() == normalized.length() ? SCORE_EXACT : SCORE_PREFIX;
+            matched += score(tokenPostings[index], score, scores);
+        }
+
+        if (normalized.length() >= FUZZY_MIN_QUERY_LENGTH && matched < limit) {
+            matched += addFuzzyMatches(normalized, scores);
+        }
+
+        long[] ranked = new long[matched];
+        int next = 0;
+        for (int ordinal = 0; ordinal < scores.length; ordinal++) {
+            if (scores[ordinal] != Integer.MAX_VALUE) {
+                ranked[next++] = ((long) scores[ordinal] << 32) | ordinal;
+            }
+        }
+        Arrays.sort(ranked);
+
+        int[] result = new int[Math.min(limit, ranked.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) ranked[i];
+        }
+        return result;
+    }
+
+    private int addFuzzyMatches(String query, int[] scores) {
+        int maxDistance = query.length() <= 5 ? 1 : 2;
+        // A query has one bigram per character, counting the start. Each edit breaks at most two of them, so
+        // a token sharing fewer than this cannot be within range of any of its prefixes.
+        int minShared = query.length() - 2 * maxDistance;
+        int[][] rows = new int[2][query.length() + maxDistance + 1];
+        int[] shared = new int[tokens.length];
+        int added = 0;
+        for (int i = 0; i < query.length(); i++) {
+            int[] posting = bigramPostings.get(bigram(query, i));
+            if (posting != null) {
+                for (int index : posting) {
+                    if (++shared[index] == minShared) {
+                        added += scoreFuzzy(query, index, maxDistance, scores, rows);
+                    }
+                }
+            }
+        }
+        return added;
+    }
+
+    private int scoreFuzzy(String query, int index, int maxDistance, int[] scores, int[][] rows) {
+        int distance = prefixDistance(query, tokens[index], maxDistance, rows);
+        return distance <= maxDistance ? score(tokenPostings[index], SCORE_FUZZY + distance, scores) : 0;
+    }
+
+    private static int score(int[] ordinals, int score, int[] scores) {
+        int added = 0;
+        for (int ordinal : ordinals) {
+            if (scores[ordinal] == Integer.MAX_VALUE) {
+                added++;
+            }
+            scores[ordinal] = Math.min(scores[ordinal], score);
+        }
+        return added;
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = tokens.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Smallest Levenshtein distance between {@code query} and any prefix of {@code token}, including the whole
+     * token. Gives up with {@code maxDistance + 1} once every cell in a row exceeds {@code maxDistance}.
+     */
+    static int prefixDistance(String query, String token, int maxDistance, int[][] rows) {
+        int columns = Math.min(token.length(), query.length() + maxDistance);
+        if (query.length() - columns > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        for (int j = 0; j <= columns; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= query.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= columns; j++) {
+                int cost = query.charAt(i - 1) == token.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        int best = maxDistance + 1;
+        for (int j = Math.max(0, query.length() - maxDistance); j <= columns; j++) {
+            best = Math.min(best, previous[j]);
+        }
+        return best;
+    }
+
+    private static String[] tokenize(TagDefinition tag) {
+        Set<String> result = new LinkedHashSet<>();
+        addTokens(result, tag.id());
+        addTokens(result, tag.displayName());
+        addTokens(result, TagText.compile(tag).plainText());
+        return result.toArray(new String[0]);
+    }
+
+    private static void addTokens(Set<String> tokens, String source) {
+        String normalized = normalize(source);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        tokens.add(normalized.replace(" ", ""));
+        for (String word : normalized.split(" ")) {
+            if (!word.isEmpty()) {
+                tokens.add(word);
+            }
+        }
+    }
+
+    static String normalize(String source) {
+        if (source == null) {
+            return "";
+        }
+        StringBuilder builder = new StringBuilder(source.length());
+        for (int i = 0; i < source.length(); i++) {
+            char c = Character.toLowerCase(source.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                builder.append(c);
+            } else if (!builder.isEmpty() && builder.charAt(builder.length() - 1) != ' ') {
+                builder.append(' ');
+            }
+        }
+        return builder.toString().strip();
+    }
+
+    private static int bigram(String token, int end) {
+        char first = end == 0 ? WORD_START : token.charAt(end - 1);
+        return (first << 16) | token.charAt(end);
+    }
+
+    private static final class IntList {
+        private int[] values = new int[2];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.ninja.tags;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of tag ordinals backed by a packed bitset. Updates return a new instance, so a set
+ * can be shared between players and read without locking.
+ */
+public final class TagSet {
+    public static final TagSet EMPTY = new TagSet(new long[0], 0);
+
+    private static final int SHARED_SINGLETONS = 256;
+    private static final TagSet[] SINGLETONS = new TagSet[SHARED_SINGLETONS];
+
+    static {
+        for (int ordinal = 0; ordinal < SHARED_SINGLETONS; ordinal++) {
+            long[] words = new long[(ordinal >> 6) + 1];
+            words[ordinal >> 6] = 1L << ordinal;
+            SINGLETONS[ordinal] = new TagSet(words, 1);
+        }
+    }
+
+    private final long[] words;
+    private final int size;
+
+    private TagSet(long[] words, int size) {
+        this.words = words;
+        this.size = size;
+    }
+
+    public boolean contains(int ordinal) {
+        int word = ordinal >> 6;
+        return ordinal >= 0 && word < words.length && (words[word] & (1L << ordinal)) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the first ordinal at or after {@code from}, or -1 if there is none.
+     */
+    public int nextOrdinal(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int word = from >> 6;
+        if (word >= words.length) {
+            return -1;
+        }
+        long bits = words[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word >= words.length) {
+                return -1;
+            }
+            bits = words[word];
+        }
+    }
+
+    /**
+     * Returns the first ordinal at or after {@code from} that is in both this set and {@code other}, or -1.
+     */
+    public int nextOrdinal(int from, TagSet other) {
+        if (from < 0) {
+            from = 0;
+        }
+        int length = Math.min(words.length, other.words.length);
+        int word = from >> 6;
+        if (word >= length) {
+            return -1;
+        }
+        long bits = words[word] & other.words[word] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++word >= length) {
+                return -1;
+            }
+            bits = words[word] & other.words[word];
+        }
+    }
+
+    /**
+     * Counts the ordinals present in both this set and {@code other}.
+     */
+    public int intersectionSize(TagSet other) {
+        int length = Math.min(words.length, other.words.length);
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            count += Long.bitCount(words[i] & other.words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the {@code index}-th ordinal (zero based) present in both this set and {@code other}, or -1 if
+     * the intersection is smaller. Whole words are skipped by their bit count.
+     */
+    public int nthOrdinal(int index, TagSet other) {
+        if (index < 0) {
+            return -1;
+        }
+        int length = Math.min(words.length, other.words.length);
+        int remaining = index;
+        for (int i = 0; i < length; i++) {
+            long bits = words[i] & other.words[i];
+            int count = Long.bitCount(bits);
+            if (remaining >= count) {
+                remaining -= count;
+                continue;
+            }
+            while (remaining-- > 0) {
+                bits &= bits - 1;
+            }
+            return (i << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return -1;
+    }
+
+    static TagSet of(int... ordinals) {
+        int max = -1;
+        for (int ordinal : ordinals) {
+            max = Math.max(max, ordinal);
+        }
+        if (max < 0) {
+            return EMPTY;
+        }
+        long[] words = new long[(max >> 6) + 1];
+        int size = 0;
+        for (int ordinal : ordinals) {
+            long bit = 1L << ordinal;
+            if ((words[ordinal >> 6] & bit) == 0) {
+                words[ordinal >> 6] |= bit;
+                size++;
+            }
+        }
+        TagSet result = new TagSet(words, size);
+        return size == 1 ? result.canonicalSingleton() : result;
+    }
+
+    TagSet with(int ordinal) {
+        if (contains(ordinal)) {
+            return this;
+        }
+        if (size == 0 && ordinal < SHARED_SINGLETONS) {
+            return SINGLETONS[ordinal];
+        }
+        long[] updated = Arrays.copyOf(words, Math.max(words.length, (ordinal >> 6) + 1));
+        updated[ordinal >> 6] |= 1L << ordinal;
+        return new TagSet(updated, size + 1);
+    }
+
+    TagSet without(int ordinal) {
+        if (!contains(ordinal)) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+        int length = words.length;
+        long[] updated = Arrays.copyOf(words, length);
+        updated[ordinal >> 6] &= ~(1L << ordinal);
+        while (length > 0 && updated[length - 1] == 0) {
+            length--;
+        }
+        TagSet result = new TagSet(length == updated.length ? updated : Arrays.copyOf(updated, length), size - 1);
+        return result.size == 1 ? result.canonicalSingleton() : result;
+    }
+
+    TagSet union(TagSet other) {
+        if (other.size == 0) {
+            return this;
+        }
+        if (size == 0) {
+            return other;
+        }
+        long[] merged = Arrays.copyOf(words, Math.max(words.length, other.words.length));
+        int mergedSize = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (i < other.words.length) {
+                merged[i] |= other.words[i];
+            }
+            mergedSize += Long.bitCount(merged[i]);
+        }
+        if (mergedSize == size) {
+            return this;
+        }
+        return mergedSize == other.size ? other : new TagSet(merged, mergedSize);
+    }
+
+    private TagSet canonicalSingleton() {
+        int ordinal = nextOrdinal(0);
+        return ordinal < SHARED_SINGLETONS ? SINGLETONS[ordinal] : this;
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof TagSet other && Arrays.equals(words, other.words);
+    }
+}
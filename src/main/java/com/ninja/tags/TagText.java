@@ -0,0 +1,92 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.server.core.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A tag's display text, pre-split on inline {@code &#RRGGBB} colour codes when the catalog is built,
+ * so rendering a label only has to wrap the stored segments.
+ */
+public final class TagText {
+    static final TagText EMPTY = new TagText(new String[0], new String[0]);
+
+    private static final Pattern INLINE_HEX_PATTERN = Pattern.compile("&#([0-9a-fA-F]{6})");
+
+    private final String[] segments;
+    private final String[] colors;
+
+    private TagText(String[] segments, String[] colors) {
+        this.segments = segments;
+        this.colors = colors;
+    }
+
+    /**
+     * The text with colour codes removed.
+     */
+    String plainText() {
+        return String.join("", segments);
+    }
+
+    static TagText compile(TagDefinition tag) {
+        if (tag == null) {
+            return EMPTY;
+        }
+
+        String sourceText = tag.text();
+        if (sourceText == null || sourceText.isBlank()) {
+            String displayName = tag.displayName() == null ? "" : tag.displayName();
+            return new TagText(new String[]{displayName}, new String[]{tag.hexColor()});
+        }
+
+        Matcher matcher = INLINE_HEX_PATTERN.matcher(sourceText);
+        List<String> segments = new ArrayList<>();
+        List<String> colors = new ArrayList<>();
+        int cursor = 0;
+        String currentColor = tag.hexColor();
+
+        while (matcher.find()) {
+            if (matcher.start() > cursor) {
+                segments.add(sourceText.substring(cursor, matcher.start()));
+                colors.add(currentColor);
+            }
+
+            currentColor = "#" + matcher.group(1);
+            cursor = matcher.end();
+        }
+
+        if (cursor < sourceText.length()) {
+            segments.add(sourceText.substring(cursor));
+            colors.add(currentColor);
+        }
+
+        return new TagText(segments.toArray(new String[0]), colors.toArray(new String[0]));
+    }
+
+    public Message toMessage() {
+        if (segments.length == 0) {
+            return Message.raw("");
+        }
+        if (segments.length == 1) {
+            return segment(0);
+        }
+
+        Message[] parts = new Message[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            parts[i] = segment(i);
+        }
+        return Message.join(parts);
+    }
+
+    private Message segment(int index) {
+        Message part = Message.raw(segments[index]);
+        String color = colors[index];
+        if (color != null && !color.isBlank()) {
+            part.color(color);
+        }
+        return part;
+    }
+}
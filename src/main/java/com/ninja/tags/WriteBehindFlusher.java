@@ -0,0 +1,60 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+final class WriteBehindFlusher {
+    private final Runnable flushAction;
+    private final long intervalMillis;
+    private final HytaleLogger logger;
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ninjatags-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    WriteBehindFlusher(Runnable flushAction, long intervalMillis, HytaleLogger logger) {
+        this.flushAction = flushAction;
+        this.intervalMillis = intervalMillis;
+        this.logger = logger;
+    }
+
+    void start() {
+        executor.scheduleWithFixedDelay(this::runFlush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void trigger() {
+        if (flushQueued.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushQueued.set(false);
+                runFlush();
+            });
+        }
+    }
+
+    void stop() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.atWarning().log("Tag flusher did not stop within 10s; continuing shutdown.");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runFlush() {
+        try {
+            flushAction.run();
+        } catch (RuntimeException e) {
+            logger.atSevere().withCause(e).log("Background tag flush failed");
+        }
+    }
+}
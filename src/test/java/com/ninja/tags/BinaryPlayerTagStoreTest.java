@@ -0,0 +1,121 @@
+package com.ninja.tags;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryPlayerTagStoreTest {
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void emptyStoreHasNoPlayers() throws IOException {
+        Path file = dir.resolve("player-tags.bin");
+        try (BinaryPlayerTagStore store = BinaryPlayerTagStore.open(file)) {
+            assertFalse(BinaryPlayerTagStore.exists(file));
+            assertTrue(store.loadAll().isEmpty());
+            assertTrue(store.load(ALICE).tags.isEmpty());
+            assertNull(store.load(ALICE).equippedTag);
+        }
+    }
+
+    @Test
+    void writeMergesMutationsIntoSnapshot() throws IOException {
+        // Enough players that unchanged records are copied as runs around the changed ones.
+        Map<UUID, PlayerTagRecord> expected = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            PlayerTagRecord record = new PlayerTagRecord();
+            record.tags.add("tag" + (i % 4));
+            if (i % 2 == 0) {
+                record.tags.add("extra");
+                record.equippedTag = "extra";
+            }
+            expected.put(new UUID(i % 3, i), record);
+        }
+        Path file = dir.resolve("player-tags.bin");
+        try (BinaryPlayerTagStore store = BinaryPlayerTagStore.open(file)) {
+            store.importAll(expected);
+        }
+        assertTrue(BinaryPlayerTagStore.exists(file));
+
+        UUID changed = new UUID(1, 100);
+        UUID emptied = new UUID(2, 101);
+        UUID added = new UUID(5, 5);
+        try (BinaryPlayerTagStore store = BinaryPlayerTagStore.open(file)) {
+            assertEquals(expected, store.loadAll());
+            store.write(List.of(
+                    new TagMutation(changed, TagMutation.Type.REVOKE, "extra"),
+                    new TagMutation(changed, TagMutation.Type.GRANT, "brand-new"),
+                    new TagMutation(changed, TagMutation.Type.EQUIP, "brand-new"),
+                    new TagMutation(emptied, TagMutation.Type.REVOKE, "tag1"),
+                    new TagMutation(added, TagMutation.Type.GRANT, "tag0"),
+                    new TagMutation(added, TagMutation.Type.GRANT, "tag0")
+            ), Map::of);
+        }
+        expected.get(changed).tags = new ArrayList<>(List.of("tag0", "brand-new"));
+        expected.get(changed).equippedTag = "brand-new";
+        expected.remove(emptied);
+        PlayerTagRecord addedRecord = new PlayerTagRecord();
+        addedRecord.tags.add("tag0");
+        expected.put(added, addedRecord);
+
+        try (BinaryPlayerTagStore store = BinaryPlayerTagStore.open(file)) {
+            assertEquals(expected, store.loadAll());
+            assertEquals(expected.get(changed), store.load(changed));
+            assertTrue(store.load(emptied).tags.isEmpty());
+        }
+    }
+
+    @Test
+    void forEachVisitsOwnersAndEquippedTags() throws IOException {
+        try (BinaryPlayerTagStore store = BinaryPlayerTagStore.open(dir.resolve("player-tags.bin"))) {
+            store.write(List.of(
+                    new TagMutation(ALICE, TagMutation.Type.GRANT, "vip"),
+                    new TagMutation(ALICE, TagMutation.Type.EQUIP, "vip"),
+                    new TagMutation(BOB, TagMutation.Type.GRANT, "ninja"),
+                    new TagMutation(BOB, TagMutation.Type.GRANT, "vip")
+            ), Map::of);
+
+            List<UUID> owners = new ArrayList<>();
+            store.forEachOwner("vip", owners::add);
+            assertEquals(Set.of(ALICE, BOB), Set.copyOf(owners));
+            assertEquals(2, owners.size());
+            List<UUID> noOwners = new ArrayList<>();
+            store.forEachOwner("unknown", noOwners::add);
+            assertTrue(noOwners.isEmpty());
+
+            Map<UUID, String> equipped = new HashMap<>();
+            store.forEachEquipped(equipped::put);
+            assertEquals(Map.of(ALICE, "vip"), equipped);
+
+            Map<UUID, PlayerTagRecord> visited = new HashMap<>();
+            store.forEachPlayer(visited::put);
+            assertEquals(store.loadAll(), visited);
+        }
+    }
+
+    @Test
+    void rejectsFilesThatAreNotSnapshots() throws IOException {
+        Path file = dir.resolve("player-tags.bin");
+        Files.writeString(file, "{\"not\": \"binary\"}");
+        assertThrows(IOException.class, () -> BinaryPlayerTagStore.open(file));
+    }
+}
@@ -0,0 +1,58 @@
+package com.ninja.tags;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CommandInputTest {
+
+    @Test
+    void parsesDurations() {
+        assertEquals(Duration.ofDays(7), CommandInput.parseDuration("7d"));
+        assertEquals(Duration.ofHours(36), CommandInput.parseDuration("1d12h"));
+        assertEquals(Duration.ofMinutes(30), CommandInput.parseDuration("30m"));
+        assertEquals(Duration.ofSeconds(90), CommandInput.parseDuration("90s"));
+        assertEquals(Duration.ofHours(2).plusMinutes(15), CommandInput.parseDuration("2H15M"));
+        assertEquals(Duration.ofMinutes(90), CommandInput.parseDuration("1h30m0s"));
+        // Repeated units add up rather than overwrite.
+        assertEquals(Duration.ofHours(3), CommandInput.parseDuration("1h2h"));
+        assertEquals(CommandInput.MAX_DURATION, CommandInput.parseDuration("36500d"));
+    }
+
+    @Test
+    void rejectsMalformedDurations() {
+        assertNull(CommandInput.parseDuration(null));
+        assertNull(CommandInput.parseDuration(""));
+        assertNull(CommandInput.parseDuration("12"));
+        assertNull(CommandInput.parseDuration("1d12"));
+        assertNull(CommandInput.parseDuration("d"));
+        assertNull(CommandInput.parseDuration("5x"));
+        assertNull(CommandInput.parseDuration("-5m"));
+        assertNull(CommandInput.parseDuration("1d 2h"));
+        assertNull(CommandInput.parseDuration("0d"));
+        assertNull(CommandInput.parseDuration("0h0m"));
+    }
+
+    @Test
+    void rejectsDurationsAboveTheCap() {
+        assertNull(CommandInput.parseDuration("36501d"));
+        assertNull(CommandInput.parseDuration("36500d1s"));
+        assertNull(CommandInput.parseDuration("999999999999d"));
+        // Overflows a long while reading the number.
+        assertNull(CommandInput.parseDuration("99999999999999999999s"));
+        // Overflows Duration while adding the parts.
+        assertNull(CommandInput.parseDuration("9223372036854775807d9223372036854775807d"));
+    }
+
+    @Test
+    void splitsOnRunsOfWhitespace() {
+        assertEquals(List.of("give", "Steve", "vip"), CommandInput.split("  give \t Steve   vip "));
+        assertEquals(List.of("list"), CommandInput.split("list"));
+        assertEquals(List.of(), CommandInput.split("   "));
+        assertEquals(List.of(), CommandInput.split(null));
+    }
+}
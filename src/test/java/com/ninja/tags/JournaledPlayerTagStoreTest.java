@@ -0,0 +1,154 @@
+package com.ninja.tags;
+
+import com.google.gson.Gson;
+import com.hypixel.hytale.logger.HytaleLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournaledPlayerTagStoreTest {
+    private static final HytaleLogger LOGGER = HytaleLogger.get("test");
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysJournalOnTopOfSnapshot() throws IOException {
+        try (JournaledPlayerTagStore store = open(1000)) {
+            store.loadAll();
+            store.write(List.of(
+                    new TagMutation(ALICE, TagMutation.Type.GRANT, "vip"),
+                    new TagMutation(ALICE, TagMutation.Type.GRANT, "ninja"),
+                    new TagMutation(ALICE, TagMutation.Type.EQUIP, "ninja"),
+                    new TagMutation(BOB, TagMutation.Type.GRANT, "vip")
+            ), Map::of);
+            store.write(List.of(
+                    new TagMutation(ALICE, TagMutation.Type.REVOKE, "vip"),
+                    new TagMutation(BOB, TagMutation.Type.EQUIP, "vip"),
+                    new TagMutation(BOB, TagMutation.Type.EQUIP, null)
+            ), Map::of);
+        }
+        assertFalse(Files.exists(dir.resolve("player-tags.json")));
+
+        try (JournaledPlayerTagStore store = open(1000)) {
+            Map<UUID, PlayerTagRecord> players = store.loadAll();
+            assertEquals(List.of("ninja"), players.get(ALICE).tags);
+            assertEquals("ninja", players.get(ALICE).equippedTag);
+            assertEquals(List.of("vip"), players.get(BOB).tags);
+            assertNull(players.get(BOB).equippedTag);
+            assertEquals(players.get(ALICE), store.load(ALICE));
+            assertTrue(store.load(UUID.randomUUID()).tags.isEmpty());
+        }
+    }
+
+    @Test
+    void dropsTornTailAndKeepsAppending() throws IOException {
+        try (JournaledPlayerTagStore store = open(1000)) {
+            store.loadAll();
+            store.write(List.of(new TagMutation(ALICE, TagMutation.Type.GRANT, "vip")), Map::of);
+        }
+        Path journal = JournaledPlayerTagStore.journalFileFor(dir.resolve("player-tags.json"));
+        long validLength = Files.size(journal);
+        // A crash mid-append leaves the start of a grant record: its type byte and half of the player id.
+        Files.write(journal, new byte[]{'G', 0, 36, '0', '0', '0'}, StandardOpenOption.APPEND);
+
+        try (JournaledPlayerTagStore store = open(1000)) {
+            assertEquals(List.of("vip"), store.loadAll().get(ALICE).tags);
+            assertEquals(validLength, Files.size(journal));
+            store.write(List.of(new TagMutation(ALICE, TagMutation.Type.GRANT, "ninja")), Map::of);
+        }
+        try (JournaledPlayerTagStore store = open(1000)) {
+            assertEquals(List.of("vip", "ninja"), store.loadAll().get(ALICE).tags);
+        }
+    }
+
+    @Test
+    void compactionFoldsJournalIntoSnapshot() throws IOException {
+        Map<UUID, PlayerTagRecord> state = new ConcurrentHashMap<>();
+        try (JournaledPlayerTagStore store = open(4)) {
+            store.loadAll();
+            for (int i = 0; i < 10; i++) {
+                UUID playerId = new UUID(0, i);
+                PlayerTagRecord record = new PlayerTagRecord();
+                record.tags.add("tag" + i);
+                state.put(playerId, record);
+                store.write(List.of(new TagMutation(playerId, TagMutation.Type.GRANT, "tag" + i)), () -> copy(state));
+            }
+        }
+        assertTrue(Files.exists(dir.resolve("player-tags.json")));
+        assertFalse(Files.exists(dir.resolve("player-tags.journal.compacting")));
+
+        try (JournaledPlayerTagStore store = open(4)) {
+            assertEquals(state, store.loadAll());
+        }
+    }
+
+    @Test
+    void finishesInterruptedCompactionOnLoad() throws IOException {
+        Path snapshot = dir.resolve("player-tags.json");
+        Path journal = JournaledPlayerTagStore.journalFileFor(snapshot);
+        Path compacting = journal.resolveSibling(journal.getFileName() + ".compacting");
+        try (JournaledPlayerTagStore store = open(snapshot)) {
+            store.loadAll();
+            store.write(List.of(new TagMutation(ALICE, TagMutation.Type.GRANT, "vip")), Map::of);
+        }
+        Files.move(journal, compacting);
+        // As if the server died after rotating the journal and appending newer records, before the snapshot was written.
+        Path later = dir.resolve("later").resolve("player-tags.json");
+        Files.createDirectories(later.getParent());
+        try (JournaledPlayerTagStore store = open(later)) {
+            store.loadAll();
+            store.write(List.of(new TagMutation(ALICE, TagMutation.Type.REVOKE, "vip"),
+                    new TagMutation(ALICE, TagMutation.Type.GRANT, "ninja")), Map::of);
+        }
+        Files.move(JournaledPlayerTagStore.journalFileFor(later), journal);
+
+        try (JournaledPlayerTagStore store = open(snapshot)) {
+            assertEquals(List.of("ninja"), store.loadAll().get(ALICE).tags);
+            assertFalse(Files.exists(compacting));
+            assertTrue(Files.exists(snapshot));
+        }
+        try (JournaledPlayerTagStore store = open(snapshot)) {
+            assertEquals(List.of("ninja"), store.loadAll().get(ALICE).tags);
+        }
+    }
+
+    private JournaledPlayerTagStore open(int compactThreshold) {
+        return open(dir.resolve("player-tags.json"), compactThreshold);
+    }
+
+    private JournaledPlayerTagStore open(Path snapshot) {
+        return open(snapshot, 1000);
+    }
+
+    private static JournaledPlayerTagStore open(Path snapshot, int compactThreshold) {
+        return new JournaledPlayerTagStore(new JsonPlayerTagStore(snapshot, new Gson(), LOGGER), snapshot, compactThreshold, LOGGER);
+    }
+    private static Map<UUID, PlayerTagRecord> copy(Map<UUID, PlayerTagRecord> players) {
+        Map<UUID, PlayerTagRecord> copy = new HashMap<>();
+        players.forEach((playerId, record) -> {
+            PlayerTagRecord clone = new PlayerTagRecord();
+            clone.tags = new ArrayList<>(record.tags);
+            clone.equippedTag = record.equippedTag;
+            copy.put(playerId, clone);
+        });
+        return copy;
+    }
+}
@@ -0,0 +1,131 @@
+package com.ninja.tags;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlayerTagTransferTest {
+    private static final String ALICE = "00000000-0000-0000-0000-000000000001";
+    private static final String BOB = "00000000-0000-0000-0000-000000000002";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void csvFieldsRoundTrip() {
+        for (String value : List.of("vip", "", "a,b", "say \"hi\"", "\"", "line\nbreak", " padded ")) {
+            String line = PlayerTagTransfer.csvField(ALICE) + "," + PlayerTagTransfer.csvField(value) + ",true";
+            assertEquals(List.of(ALICE, value, "true"), PlayerTagTransfer.splitCsv(line), value);
+        }
+        assertEquals("vip", PlayerTagTransfer.csvField("vip"));
+        assertEquals("\"a,b\"", PlayerTagTransfer.csvField("a,b"));
+        assertEquals("\"say \"\"hi\"\"\"", PlayerTagTransfer.csvField("say \"hi\""));
+    }
+
+    @Test
+    void splitCsvKeepsEmptyAndUnstrippedFields() {
+        assertEquals(List.of("a", "", "c"), PlayerTagTransfer.splitCsv("a,,c"));
+        assertEquals(List.of("", ""), PlayerTagTransfer.splitCsv(","));
+        assertEquals(List.of(" a ", " b"), PlayerTagTransfer.splitCsv(" a , b"));
+        assertEquals(List.of("x,y"), PlayerTagTransfer.splitCsv("x\",\"y"));
+    }
+
+    @Test
+    void csvSourceSkipsHeaderCommentsAndBlankLines() throws IOException {
+        Path file = dir.resolve("in.csv");
+        Files.writeString(file, String.join("\n",
+                "# exported by hand",
+                "",
+                "UUID,tag,equipped",
+                ALICE + ",vip,true",
+                ALICE + ",\"odd,tag\"",
+                BOB + ",ninja, TRUE ",
+                BOB,
+                "player,vip"));
+
+        List<PlayerTagTransfer.RawRow> rows = readAll(new PlayerTagTransfer.CsvRowSource(file), 2);
+        assertEquals(List.of(
+                new PlayerTagTransfer.RawRow(ALICE, "vip", true, true),
+                new PlayerTagTransfer.RawRow(ALICE, "odd,tag", true, false),
+                new PlayerTagTransfer.RawRow(BOB, "ninja", true, true),
+                new PlayerTagTransfer.RawRow(BOB, null, true, false),
+                // Only the first line can be a header; later ones are rows, left for validation to reject.
+                new PlayerTagTransfer.RawRow("player", "vip", true, false)
+        ), rows);
+    }
+
+    @Test
+    void csvSourceWithoutHeaderKeepsFirstRow() throws IOException {
+        Path file = dir.resolve("in.csv");
+        Files.writeString(file, ALICE + ",vip\n");
+        assertEquals(List.of(new PlayerTagTransfer.RawRow(ALICE, "vip", true, false)),
+                readAll(new PlayerTagTransfer.CsvRowSource(file), 10));
+    }
+
+    @Test
+    void jsonSourceReadsPlayerTagsLayout() throws IOException {
+        Path file = dir.resolve("in.json");
+        Files.writeString(file, """
+                {
+                  "%s": {"tags": ["vip", "ninja", 7], "equippedTag": "ninja", "extra": {"ignored": true}},
+                  "%s": {"tags": [], "equippedTag": "staff"},
+                  "nobody": null,
+                  "%s": {"equippedTag": null}
+                }
+                """.formatted(ALICE, BOB, "00000000-0000-0000-0000-000000000003"));
+
+        assertEquals(List.of(
+                new PlayerTagTransfer.RawRow(ALICE, "vip", true, false),
+                new PlayerTagTransfer.RawRow(ALICE, "ninja", true, true),
+                // Equipped but not owned: kept as an equip-only row, for tags that come from entitlement rules.
+                new PlayerTagTransfer.RawRow(BOB, "staff", false, true)
+        ), readAll(new PlayerTagTransfer.JsonRowSource(file), 1));
+    }
+
+    @Test
+    void jsonSourceAcceptsEmptyFiles() throws IOException {
+        Path file = dir.resolve("in.json");
+        Files.writeString(file, "");
+        assertTrue(readAll(new PlayerTagTransfer.JsonRowSource(file), 10).isEmpty());
+        Files.writeString(file, "{}");
+        assertTrue(readAll(new PlayerTagTransfer.JsonRowSource(file), 10).isEmpty());
+    }
+
+    @Test
+    void jsonSourceReportsMalformedFiles() throws IOException {
+        Path file = dir.resolve("in.json");
+        Files.writeString(file, "[\"not\", \"an\", \"object\"]");
+        assertThrows(IOException.class, () -> readAll(new PlayerTagTransfer.JsonRowSource(file), 10));
+        Files.writeString(file, "{\"" + ALICE + "\": {\"tags\": [\"vip\"");
+        assertThrows(IOException.class, () -> readAll(new PlayerTagTransfer.JsonRowSource(file), 10));
+    }
+
+    @Test
+    void formatsFromNamesAndExtensions() {
+        assertEquals(PlayerTagTransfer.Format.CSV, PlayerTagTransfer.Format.parse("CSV"));
+        assertEquals(PlayerTagTransfer.Format.JSON, PlayerTagTransfer.Format.of(Path.of("backup.player-tags.json")));
+        assertNull(PlayerTagTransfer.Format.of(Path.of("player-tags")));
+        assertNull(PlayerTagTransfer.Format.parse("xml"));
+    }
+
+    private static List<PlayerTagTransfer.RawRow> readAll(PlayerTagTransfer.RowSource source, int batchSize) throws IOException {
+        List<PlayerTagTransfer.RawRow> rows = new ArrayList<>();
+        try (source) {
+            List<PlayerTagTransfer.RawRow> batch;
+            while (!(batch = source.next(batchSize)).isEmpty()) {
+                rows.addAll(batch);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,153 @@
+package com.ninja.tags;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlitePlayerTagStoreTest {
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesApplyInMutationOrder() throws IOException {
+        try (SqlitePlayerTagStore store = SqlitePlayerTagStore.open(dir.resolve("player-tags.db"))) {
+            store.write(List.of(
+                    new TagMutation(ALICE, TagMutation.Type.GRANT, "vip"),
+                    new TagMutation(ALICE, TagMutation.Type.GRANT, "ninja"),
+                    new TagMutation(ALICE, TagMutation.Type.EQUIP, "ninja"),
+                    new TagMutation(ALICE, TagMutation.Type.GRANT, "temp"),
+                    new TagMutation(ALICE, TagMutation.Type.REVOKE, "temp"),
+                    new TagMutation(BOB, TagMutation.Type.GRANT, "vip"),
+                    new TagMutation(BOB, TagMutation.Type.EQUIP, "vip"),
+                    new TagMutation(BOB, TagMutation.Type.EQUIP, null)
+            ), Map::of);
+
+            PlayerTagRecord alice = store.load(ALICE);
+            assertEquals(List.of("vip", "ninja"), alice.tags);
+            assertEquals("ninja", alice.equippedTag);
+            PlayerTagRecord bob = store.load(BOB);
+            assertEquals(List.of("vip"), bob.tags);
+            assertNull(bob.equippedTag);
+            assertTrue(store.load(UUID.randomUUID()).tags.isEmpty());
+        }
+    }
+
+    @Test
+    void reopenedStoreKeepsImportedPlayers() throws IOException {
+        Path file = dir.resolve("player-tags.db");
+        PlayerTagRecord record = new PlayerTagRecord();
+        record.tags.add("vip");
+        record.equippedTag = "vip";
+        try (SqlitePlayerTagStore store = SqlitePlayerTagStore.open(file)) {
+            assertFalse(store.isMigrated());
+            store.importAll(Map.of(ALICE, record));
+        }
+        try (SqlitePlayerTagStore store = SqlitePlayerTagStore.open(file)) {
+            assertTrue(store.isMigrated());
+            assertEquals(Map.of(ALICE, record), store.loadAll());
+            List<UUID> owners = new ArrayList<>();
+            store.forEachOwner("vip", owners::add);
+            assertEquals(List.of(ALICE), owners);
+            Map<UUID, String> equipped = new HashMap<>();
+            store.forEachEquipped(equipped::put);
+            assertEquals(Map.of(ALICE, "vip"), equipped);
+        }
+    }
+
+    @Test
+    void forEachPlayerVisitsEveryPlayerOnceAcrossPages() throws IOException {
+        // More players than one page, with some that only have an equipped row.
+        Map<UUID, PlayerTagRecord> players = new TreeMap<>((left, right) -> left.toString().compareTo(right.toString()));
+        for (int i = 0; i < 2500; i++) {
+            PlayerTagRecord record = new PlayerTagRecord();
+            if (i % 7 != 0) {
+                record.tags.add("tag" + (i % 5));
+                record.tags.add("extra");
+            }
+            if (i % 3 == 0 || i % 7 == 0) {
+                record.equippedTag = "tag" + (i % 5);
+            }
+            players.put(new UUID(i * 31L, i), record);
+        }
+        try (SqlitePlayerTagStore store = SqlitePlayerTagStore.open(dir.resolve("player-tags.db"))) {
+            store.importAll(players);
+
+            Map<UUID, PlayerTagRecord> visited = new TreeMap<>((left, right) -> left.toString().compareTo(right.toString()));
+            List<UUID> order = new ArrayList<>();
+            store.forEachPlayer((playerId, record) -> {
+                order.add(playerId);
+                visited.put(playerId, record);
+            });
+
+            assertEquals(players.size(), order.size());
+            assertEquals(List.copyOf(players.keySet()), order);
+            for (Map.Entry<UUID, PlayerTagRecord> entry : players.entrySet()) {
+                PlayerTagRecord actual = visited.get(entry.getKey());
+                assertEquals(Set.copyOf(entry.getValue().tags), Set.copyOf(actual.tags), entry.getKey().toString());
+                assertEquals(entry.getValue().equippedTag, actual.equippedTag, entry.getKey().toString());
+            }
+        }
+    }
+
+    @Test
+    void sharedWritesFeedTheChangeLog() throws IOException {
+        Path file = dir.resolve("player-tags.db");
+        try (SqlitePlayerTagStore first = SqlitePlayerTagStore.openShared(file, "server-a");
+             SqlitePlayerTagStore second = SqlitePlayerTagStore.openShared(file, "server-b")) {
+            assertEquals(0, first.latestChange());
+            first.write(List.of(
+                    new TagMutation(ALICE, TagMutation.Type.GRANT, "vip"),
+                    new TagMutation(ALICE, TagMutation.Type.EQUIP, "vip"),
+                    new TagMutation(BOB, TagMutation.Type.GRANT, "vip")
+            ), Map::of);
+            second.write(List.of(new TagMutation(ALICE, TagMutation.Type.GRANT, "ninja")), Map::of);
+
+            // One entry per player per write, in commit order, visible to every server sharing the file.
+            List<PlayerChange> changes = first.changesSince(0, 10);
+            assertEquals(3, changes.size());
+            assertEquals(List.of(ALICE, BOB, ALICE), changes.stream().map(PlayerChange::playerId).toList());
+            assertEquals(List.of(1L, 1L, 2L), changes.stream().map(PlayerChange::version).toList());
+            assertEquals(List.of("server-a", "server-a", "server-b"), changes.stream().map(PlayerChange::serverId).toList());
+            assertEquals(changes.get(2).sequence(), second.latestChange());
+
+            assertEquals(changes.subList(1, 3), second.changesSince(changes.get(0).sequence(), 10));
+            assertEquals(changes.subList(0, 1), second.changesSince(0, 1));
+            assertTrue(second.changesSince(second.latestChange(), 10).isEmpty());
+
+            PlayerTagRecord alice = second.load(ALICE);
+            assertEquals(List.of("vip", "ninja"), alice.tags);
+            assertEquals(2, alice.version);
+            assertEquals(1, second.load(BOB).version);
+            assertEquals(0, second.load(UUID.randomUUID()).version);
+
+            first.pruneChanges(System.currentTimeMillis() + 1);
+            assertTrue(first.changesSince(0, 10).isEmpty());
+            // The sequence survives pruning, so a reader seeded from it sees no gap before the next change.
+            assertEquals(changes.get(2).sequence(), second.latestChange());
+            first.write(List.of(new TagMutation(BOB, TagMutation.Type.REVOKE, "vip")), Map::of);
+            long next = changes.get(2).sequence() + 1;
+            assertEquals(next, second.changesSince(changes.get(2).sequence(), 10).getFirst().sequence());
+            assertEquals(next, second.latestChange());
+            // Versions outlive the pruned feed.
+            assertEquals(2, first.load(ALICE).version);
+            assertEquals(2, first.load(BOB).version);
+        }
+    }
+}
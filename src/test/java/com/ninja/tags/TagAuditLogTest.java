@@ -0,0 +1,156 @@
+package com.ninja.tags;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TagAuditLogTest {
+    private static final HytaleLogger LOGGER = HytaleLogger.get("test");
+    private static final int PLAYERS = 40;
+    private static final int ENTRIES_PER_PLAYER = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void historyIsNewestFirstAcrossSegments() throws Exception {
+        TagAuditLog audit = start(2_000, 1_000);
+        recordAll(audit);
+
+        // Buffered entries are drained before reading, so nothing is missed before the first flush.
+        for (int player = 0; player < PLAYERS; player++) {
+            assertEquals(expectedDetails(player, ENTRIES_PER_PLAYER), details(audit.history(playerId(player), 100)));
+            assertEquals(expectedDetails(player, 3), details(audit.history(playerId(player), 3)));
+        }
+        assertTrue(audit.history(new UUID(9, 9), 10).get(5, TimeUnit.SECONDS).isEmpty());
+        audit.shutdown();
+
+        assertTrue(countFiles(".log") > 10);
+        assertEquals(countFiles(".log") - 1, countFiles(".idx"));
+    }
+
+    @Test
+    void rebuildsMissingAndDamagedIndexes() throws Exception {
+        TagAuditLog audit = start(2_000, 1_000);
+        recordAll(audit);
+        audit.history(playerId(0), 1).get(5, TimeUnit.SECONDS);
+        audit.shutdown();
+
+        Files.delete(dir.resolve("audit-000001.idx"));
+        Files.write(dir.resolve("audit-000002.idx"), new byte[]{0, 0, 0, 9, 1, 2, 3});
+
+        audit = start(2_000, 1_000);
+        for (int player = 0; player < PLAYERS; player++) {
+            assertEquals(expectedDetails(player, ENTRIES_PER_PLAYER), details(audit.history(playerId(player), 100)));
+        }
+        audit.shutdown();
+        assertTrue(Files.exists(dir.resolve("audit-000001.idx")));
+        assertEquals(4 + 24L * linesWithPlayer(dir.resolve("audit-000002.log")), Files.size(dir.resolve("audit-000002.idx")));
+    }
+
+    @Test
+    void dropsTornLastLineOnRestart() throws Exception {
+        TagAuditLog audit = start(1 << 20, 3);
+        audit.record("admin", "grant", playerId(1), "one", "vip", "0");
+        audit.shutdown();
+
+        Path log = dir.resolve("audit-000001.log");
+        long validLength = Files.size(log);
+        Files.writeString(log, "{\"time\":1,\"actor\":\"adm", StandardOpenOption.APPEND);
+
+        audit = start(1 << 20, 3);
+        assertEquals(validLength, Files.size(log));
+        audit.record("admin", "revoke", playerId(1), "one", "vip", "1");
+        assertEquals(List.of("1", "0"), details(audit.history(playerId(1), 10)));
+        audit.shutdown();
+        assertTrue(Files.readString(log, StandardCharsets.UTF_8).endsWith("\n"));
+    }
+
+    @Test
+    void rotationKeepsOnlyRetainedSegments() throws Exception {
+        TagAuditLog audit = start(2_000, 3);
+        recordAll(audit);
+        audit.history(playerId(0), 1).get(5, TimeUnit.SECONDS);
+        audit.shutdown();
+
+        assertEquals(3, countFiles(".log"));
+        assertEquals(2, countFiles(".idx"));
+        assertFalse(Files.exists(dir.resolve("audit-000001.log")));
+    }
+
+    @Test
+    void disabledLogRecordsNothing() {
+        TagAuditLog audit = new TagAuditLog(dir.resolve("audit"), false, 1 << 20, 3, LOGGER);
+        audit.start();
+        audit.record("admin", "grant", playerId(1), "one", "vip", null);
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> audit.history(playerId(1), 10).get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertEquals(0, audit.getStats().recorded());
+        audit.shutdown();
+        assertFalse(Files.exists(dir.resolve("audit")));
+    }
+
+    private TagAuditLog start(long maxFileBytes, int retainFiles) {
+        TagAuditLog audit = new TagAuditLog(dir, true, maxFileBytes, retainFiles, LOGGER);
+        audit.start();
+        return audit;
+    }
+
+    private static void recordAll(TagAuditLog audit) {
+        // Interleaved, so each segment indexes many players and each player spans many segments.
+        for (int entry = 0; entry < ENTRIES_PER_PLAYER; entry++) {
+            for (int player = 0; player < PLAYERS; player++) {
+                audit.record("admin", "grant", playerId(player), "player" + player, "tag" + entry, Integer.toString(entry));
+            }
+        }
+    }
+
+    private static UUID playerId(int player) {
+        // Spread over both halves of the id so the index order is not the insertion order.
+        return new UUID(player % 2 == 0 ? player : -player, player * 7919L);
+    }
+
+    private static List<String> expectedDetails(int player, int count) {
+        List<String> details = new ArrayList<>();
+        for (int entry = ENTRIES_PER_PLAYER - 1; entry >= ENTRIES_PER_PLAYER - count; entry--) {
+            details.add(Integer.toString(entry));
+        }
+        return details;
+    }
+
+    private static List<String> details(CompletableFuture<List<AuditEntry>> history)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return history.get(5, TimeUnit.SECONDS).stream().map(AuditEntry::detail).toList();
+    }
+
+    private long countFiles(String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix)).count();
+        }
+    }
+
+    private static long linesWithPlayer(Path log) throws IOException {
+        try (Stream<String> lines = Files.lines(log)) {
+            return lines.filter(line -> line.contains("\"player\"")).count();
+        }
+    }
+}
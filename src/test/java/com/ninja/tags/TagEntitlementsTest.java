@@ -0,0 +1,112 @@
+package com.ninja.tags;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TagEntitlementsTest {
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private final TagOrdinals ordinals = new TagOrdinals();
+    private final TagCatalog catalog = catalog();
+    private final int staff = ordinals.find("staff");
+    private final GroupSource source = new GroupSource();
+    private final TagEntitlements entitlements = new TagEntitlements(source);
+
+    @Test
+    void cachesUntilInvalidated() {
+        source.groups.put(ALICE, Set.of("staff"));
+        assertEquals(TagSet.of(staff), entitlements.entitled(ALICE, catalog));
+        source.groups.put(ALICE, Set.of());
+        assertEquals(TagSet.of(staff), entitlements.entitled(ALICE, catalog));
+        assertEquals(1, entitlements.stats().evaluations());
+
+        entitlements.invalidate(ALICE);
+        assertSame(TagSet.EMPTY, entitlements.entitled(ALICE, catalog));
+        assertEquals(2, entitlements.stats().evaluations());
+    }
+
+    @Test
+    void reevaluatesForANewCatalog() {
+        source.groups.put(ALICE, Set.of("staff"));
+        entitlements.entitled(ALICE, catalog);
+        source.groups.put(ALICE, Set.of());
+        assertSame(TagSet.EMPTY, entitlements.entitled(ALICE, catalog()));
+        assertEquals(2, entitlements.stats().evaluations());
+    }
+
+    @Test
+    void unloadedPlayersAreNotCached() {
+        assertNull(entitlements.entitled(ALICE, catalog));
+        source.groups.put(ALICE, Set.of("staff"));
+        assertEquals(TagSet.of(staff), entitlements.entitled(ALICE, catalog));
+    }
+
+    @Test
+    void invalidationDuringEvaluationWins() {
+        source.groups.put(ALICE, Set.of("staff"));
+        // The player leaves the group while their old permission data is being evaluated.
+        source.onLookup = playerId -> {
+            source.onLookup = null;
+            source.groups.put(playerId, Set.of());
+            entitlements.invalidate(playerId);
+        };
+        assertEquals(TagSet.of(staff), entitlements.entitled(ALICE, catalog));
+        assertSame(TagSet.EMPTY, entitlements.entitled(ALICE, catalog));
+    }
+
+    private TagCatalog catalog() {
+        LinkedHashMap<String, TagDefinition> tags = new LinkedHashMap<>();
+        tags.put("vip", new TagDefinition("vip", "VIP", "#FFD700", "[VIP]"));
+        tags.put("staff", new TagDefinition("staff", "Staff", "#FF0000", "[Staff]",
+                new TagEntitlement(List.of("staff"), null, null)));
+        return new TagCatalog(tags, ordinals, null);
+    }
+
+    private static final class GroupSource implements EntitlementSource {
+        final Map<UUID, Set<String>> groups = new ConcurrentHashMap<>();
+        Consumer<UUID> onLookup;
+
+        @Override
+        public PermissionSubject subject(UUID playerId) {
+            Set<String> playerGroups = groups.get(playerId);
+            if (playerGroups == null) {
+                return null;
+            }
+            if (onLookup != null) {
+                onLookup.accept(playerId);
+            }
+            return new PermissionSubject() {
+                @Override
+                public boolean inGroup(String group) {
+                    return playerGroups.contains(group);
+                }
+
+                @Override
+                public boolean hasPermission(String node) {
+                    return false;
+                }
+
+                @Override
+                public String meta(String key) {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public boolean subscribe(Consumer<UUID> listener) {
+            return false;
+        }
+    }
+}
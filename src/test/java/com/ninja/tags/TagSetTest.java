@@ -0,0 +1,137 @@
+package com.ninja.tags;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TagSetTest {
+
+    @Test
+    void handlesWordBoundaries() {
+        TagSet set = TagSet.of(0, 63, 64, 127, 128, 300);
+        assertEquals(6, set.size());
+        for (int ordinal : new int[]{0, 63, 64, 127, 128, 300}) {
+            assertTrue(set.contains(ordinal), "contains " + ordinal);
+        }
+        assertFalse(set.contains(1));
+        assertFalse(set.contains(62));
+        assertFalse(set.contains(129));
+        assertFalse(set.contains(-1));
+        assertFalse(set.contains(10_000));
+
+        assertEquals(63, set.nextOrdinal(1));
+        assertEquals(64, set.nextOrdinal(64));
+        assertEquals(300, set.nextOrdinal(129));
+        assertEquals(-1, set.nextOrdinal(301));
+        assertEquals(-1, set.nextOrdinal(10_000));
+        assertEquals(0, set.nextOrdinal(-5));
+    }
+
+    @Test
+    void updatesReturnNewSetsAndKeepTheOriginal() {
+        TagSet original = TagSet.of(5, 70);
+        TagSet grown = original.with(200);
+        assertEquals(TagSet.of(5, 70), original);
+        assertEquals(TagSet.of(5, 70, 200), grown);
+        assertSame(grown, grown.with(70));
+        assertSame(original, original.without(6));
+
+        // Trailing empty words are trimmed, so sets with the same ordinals are equal however they were built.
+        assertEquals(TagSet.of(5, 70), grown.without(200));
+        assertEquals(TagSet.of(5, 70).hashCode(), grown.without(200).hashCode());
+        assertSame(TagSet.EMPTY, TagSet.of(9).without(9));
+        assertSame(TagSet.EMPTY, TagSet.of());
+    }
+
+    @Test
+    void singleOrdinalSetsAreShared() {
+        assertSame(TagSet.of(7), TagSet.EMPTY.with(7));
+        assertSame(TagSet.of(7), TagSet.of(7, 300).without(300));
+        assertSame(TagSet.of(7), TagSet.of(7, 7));
+        assertEquals(TagSet.of(400), TagSet.EMPTY.with(400));
+    }
+
+    @Test
+    void unionReusesAnOperandWhenNothingIsAdded() {
+        TagSet small = TagSet.of(1, 2);
+        TagSet large = TagSet.of(1, 2, 130);
+        assertSame(large, small.union(large));
+        assertSame(large, large.union(small));
+        assertSame(small, small.union(TagSet.EMPTY));
+        assertSame(small, TagSet.EMPTY.union(small));
+        TagSet merged = TagSet.of(1, 64).union(TagSet.of(2, 200));
+        assertEquals(TagSet.of(1, 2, 64, 200), merged);
+        assertEquals(4, merged.size());
+    }
+
+    @Test
+    void intersectionQueries() {
+        TagSet owned = TagSet.of(1, 3, 64, 65, 130, 500);
+        TagSet visible = TagSet.of(3, 64, 130, 131);
+        assertEquals(3, owned.intersectionSize(visible));
+        assertEquals(3, owned.nthOrdinal(0, visible));
+        assertEquals(64, owned.nthOrdinal(1, visible));
+        assertEquals(130, owned.nthOrdinal(2, visible));
+        assertEquals(-1, owned.nthOrdinal(3, visible));
+        assertEquals(-1, owned.nthOrdinal(-1, visible));
+        assertEquals(64, owned.nextOrdinal(4, visible));
+        assertEquals(130, owned.nextOrdinal(65, visible));
+        assertEquals(-1, owned.nextOrdinal(131, visible));
+        assertEquals(0, owned.intersectionSize(TagSet.EMPTY));
+    }
+
+    @Test
+    void matchesBitSetUnderRandomUpdates() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            BitSet expected = new BitSet();
+            TagSet set = TagSet.EMPTY;
+            BitSet otherExpected = new BitSet();
+            TagSet other = TagSet.EMPTY;
+            for (int step = 0; step < 60; step++) {
+                int ordinal = random.nextInt(400);
+                if (random.nextInt(3) == 0) {
+                    expected.clear(ordinal);
+                    set = set.without(ordinal);
+                } else {
+                    expected.set(ordinal);
+                    set = set.with(ordinal);
+                }
+                int otherOrdinal = random.nextInt(400);
+                otherExpected.set(otherOrdinal);
+                other = other.with(otherOrdinal);
+            }
+
+            assertEquals(expected.cardinality(), set.size());
+            assertEquals(TagSet.of(expected.stream().toArray()), set);
+            int previous = -1;
+            for (int ordinal = expected.nextSetBit(0); ordinal >= 0; ordinal = expected.nextSetBit(ordinal + 1)) {
+                assertEquals(ordinal, set.nextOrdinal(previous + 1));
+                previous = ordinal;
+            }
+            assertEquals(-1, set.nextOrdinal(previous + 1));
+
+            BitSet both = (BitSet) expected.clone();
+            both.and(otherExpected);
+            assertEquals(both.cardinality(), set.intersectionSize(other));
+            int index = 0;
+            for (int ordinal = both.nextSetBit(0); ordinal >= 0; ordinal = both.nextSetBit(ordinal + 1)) {
+                assertEquals(ordinal, set.nthOrdinal(index++, other));
+                assertEquals(ordinal, set.nextOrdinal(ordinal, other));
+            }
+            assertEquals(-1, set.nthOrdinal(index, other));
+
+            BitSet union = (BitSet) expected.clone();
+            union.or(otherExpected);
+            TagSet merged = set.union(other);
+            assertEquals(union.cardinality(), merged.size());
+            assertEquals(TagSet.of(union.stream().toArray()), merged);
+        }
+    }
+}